@@ -4,14 +4,13 @@ import org.mtgpeasant.perfectdeck.common.cards.Cards;
 import org.mtgpeasant.perfectdeck.common.mana.Mana;
 import org.mtgpeasant.perfectdeck.goldfish.DeckPilot;
 import org.mtgpeasant.perfectdeck.goldfish.Game;
+import org.mtgpeasant.perfectdeck.goldfish.ManaCapability;
 import org.mtgpeasant.perfectdeck.goldfish.Permanent;
 import org.mtgpeasant.perfectdeck.goldfish.Seer;
 import org.mtgpeasant.perfectdeck.goldfish.event.GameEvent;
 import org.mtgpeasant.perfectdeck.goldfish.event.GameListener;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.stream.Collectors;
 
 import static org.mtgpeasant.perfectdeck.goldfish.Permanent.*;
@@ -33,11 +32,15 @@ public class BurnDeckPilot extends DeckPilot<Game> implements BurnCards, GameLis
 
     private static String[] CREATURES = {MONASTERY_SWIFTSPEAR, THERMO_ALCHEMIST, ELECTROSTATIC_FIELD, FIREBRAND_ARCHER, KESSIG_FLAMEBREATHER, KELDON_MARAUDERS, GHITU_LAVARUNNER, ORCISH_HELLRAISER, VIASHINO_PYROMANCER, FURNACE_SCAMP};
     private static String[] LANDS = {MOUNTAIN, FORGOTTEN_CAVE};
+    private static final ManaCapability.Rules MANA = ManaCapability.rules().tap(R, LANDS);
 
     // all cards that could contribute to a kill in the turn
     private static String[] RUSH = {MONASTERY_SWIFTSPEAR, FIREBRAND_ARCHER, KESSIG_FLAMEBREATHER, KELDON_MARAUDERS, GHITU_LAVARUNNER, VIASHINO_PYROMANCER, ELECTROSTATIC_FIELD,
             RIFT_BOLT, FIREBLAST, LAVA_SPIKE, LIGHTNING_BOLT, SKEWER_THE_CRITICS, LAVA_DART, LAVA_DART_FB, NEEDLE_DROP, CHAIN_LIGHTNING, FORKED_BOLT, SEARING_BLAZE, MAGMA_JET, VOLCANIC_FALLOUT, FLAME_RIFT, SEAL_OF_FIRE, FURNACE_SCAMP, RECKLESS_ABANDON};
 
+    // direct damage spells that only depend on available mana, and don't change what other spells do
+    private static final Set<String> COMMUTING = new HashSet<>(Arrays.asList(RIFT_BOLT, LAVA_SPIKE, LIGHTNING_BOLT, CHAIN_LIGHTNING, LAVA_DART, FORKED_BOLT, FLAME_RIFT, VOLCANIC_FALLOUT));
+
     private transient Seer.VictoryRoute victoryRoute;
 
     private static Cards managedCards = DeckPilot.loadManagedCards(BurnDeckPilot.class);
@@ -46,6 +49,12 @@ public class BurnDeckPilot extends DeckPilot<Game> implements BurnCards, GameLis
         super(game);
     }
 
+    @Override
+    public boolean reset() {
+        victoryRoute = null;
+        return true;
+    }
+
     @Override
     public boolean keepHand(Cards hand) {
         int lands = hand.count(LANDS);
@@ -135,9 +144,11 @@ public class BurnDeckPilot extends DeckPilot<Game> implements BurnCards, GameLis
 
         // is there a way to kill opponent this turn (only from turn 3)?
         if (game.getCurrentTurn() > 2) {
-            victoryRoute = Seer.findRouteToVictory(this, RUSH).orElse(null);
+            victoryRoute = findRouteToVictory().orElse(null);
             if (victoryRoute != null) {
-                game.log(">>> I can win now with: " + victoryRoute);
+                if (game.isLogging()) {
+                    game.log(">>> I can win now with: " + victoryRoute);
+                }
                 // sacrifice all seals
                 game.getBattlefield().find(withName(SEAL_OF_FIRE)).forEach(seal -> {
                     game.sacrifice(seal);
@@ -195,6 +206,11 @@ public class BurnDeckPilot extends DeckPilot<Game> implements BurnCards, GameLis
         }
     }
 
+    @Override
+    public Set<GameEvent.Type> getEventTypes() {
+        return EnumSet.of(GameEvent.Type.cast);
+    }
+
     /**
      * Manages all triggers
      *
@@ -312,6 +328,13 @@ public class BurnDeckPilot extends DeckPilot<Game> implements BurnCards, GameLis
         }
     }
 
+    /**
+     * Looks for a way to kill the opponent this turn
+     */
+    Optional<Seer.VictoryRoute> findRouteToVictory() {
+        return Seer.findRouteToVictory(this, RUSH);
+    }
+
     /**
      * Casts the first possible card from the list
      *
@@ -622,6 +645,139 @@ public class BurnDeckPilot extends DeckPilot<Game> implements BurnCards, GameLis
         return false;
     }
 
+    /**
+     * Upper bound of the damage still possible this turn: each castable rush spell deals its max damage plus all
+     * triggers it may cause (even from creatures cast later), paying spells being limited by the available mana
+     */
+    @Override
+    public int maxDamage() {
+        boolean beforeCombat = game.getCurrentPhase() == Game.Phase.first_main;
+        int thermos = game.getBattlefield().count(withName(THERMO_ALCHEMIST).and(untapped()).and(withoutSickness()));
+        // each needle drop draws an unknown card (that may be any trigger creature)
+        int needles = countInHand(NEEDLE_DROP);
+        // damage or prowess per non-creature spell, and per instant or sorcery
+        int perNonCreature = countInPlay(FIREBRAND_ARCHER) + countInPlay(KESSIG_FLAMEBREATHER) + countInPlay(MONASTERY_SWIFTSPEAR) + needles;
+        int perInstantOrSorcery = countInPlay(ELECTROSTATIC_FIELD) + thermos + 3 * game.getBattlefield().count(withName(KILN_FIEND)) + needles;
+        int perInstant = perNonCreature + perInstantOrSorcery;
+        int manaTotal = game.getManaCapability(MANA).getTotal();
+
+        int free = 0;
+        List<Integer> paying = new ArrayList<>();
+        for (String card : RUSH) {
+            int count = card.equals(LAVA_DART_FB) ? game.getGraveyard().count(LAVA_DART) : countInHand(card);
+            if (count == 0) {
+                continue;
+            }
+            Game.CardType type = typeof(card);
+            int damage = maxDamage(card, beforeCombat);
+            if (type == Game.CardType.instant || type == Game.CardType.sorcery) {
+                damage += perInstant;
+            } else if (type == Game.CardType.enchantment) {
+                damage += perNonCreature;
+            }
+            for (int i = 0; i < count; i++) {
+                switch (card) {
+                    case FIREBLAST:
+                    case LAVA_DART_FB:
+                        free += damage;
+                        break;
+                    case LAVA_DART:
+                        // can then be flashed back
+                        free += damage;
+                        paying.add(damage);
+                        break;
+                    default:
+                        paying.add(damage);
+                        break;
+                }
+            }
+        }
+        if (needles > 0) {
+            // drawn needle drops chain (each costing mana), and each chain ends with any card (maybe free, maybe a lava dart to flash back)
+            for (int i = 0; i < manaTotal; i++) {
+                paying.add(1 + perInstant);
+            }
+            free += needles * (4 + perInstant + 1 + perInstant);
+        }
+        // each paying spell costs at least one mana
+        paying.sort(Collections.reverseOrder());
+        int bound = free + paying.stream().limit(manaTotal).mapToInt(Integer::intValue).sum();
+
+        if (beforeCombat) {
+            List<Permanent> attackers = game.getBattlefield().find(creaturesThatCanBeTapped().and(notWithTag(DEFENDER_SUBTYPE)));
+            for (Permanent attacker : attackers) {
+                bound += strength(attacker);
+                if (attacker.getCard().equals(FURNACE_SCAMP)) {
+                    bound += 3;
+                } else if (attacker.getCard().equals(GHITU_LAVARUNNER)) {
+                    // may still grow
+                    bound += 2 - baseStrength(attacker);
+                }
+            }
+            // lavarunners may get haste
+            bound += 2 * game.getBattlefield().count(withName(GHITU_LAVARUNNER).and(withSickness()));
+        }
+        // thermos in ending phase
+        return bound + thermos;
+    }
+
+    /**
+     * Burn never poisons
+     */
+    @Override
+    public int maxPoison() {
+        return 0;
+    }
+
+    @Override
+    public boolean commute(String card, String other) {
+        return COMMUTING.contains(card) && COMMUTING.contains(other);
+    }
+
+    /**
+     * Max damage dealt by the given card alone (without triggers)
+     */
+    private int maxDamage(String card, boolean beforeCombat) {
+        switch (card) {
+            case FIREBLAST:
+            case FLAME_RIFT:
+            case RECKLESS_ABANDON:
+                return 4;
+            case RIFT_BOLT:
+            case LAVA_SPIKE:
+            case LIGHTNING_BOLT:
+            case CHAIN_LIGHTNING:
+            case SKEWER_THE_CRITICS:
+            case SEARING_BLAZE:
+                return 3;
+            case FORKED_BOLT:
+            case MAGMA_JET:
+            case VOLCANIC_FALLOUT:
+            case VIASHINO_PYROMANCER:
+                return 2;
+            case LAVA_DART:
+            case LAVA_DART_FB:
+            case NEEDLE_DROP:
+            case KELDON_MARAUDERS:
+                return 1;
+            // creatures with haste
+            case MONASTERY_SWIFTSPEAR:
+                return beforeCombat ? 1 : 0;
+            case GHITU_LAVARUNNER:
+                return beforeCombat ? 2 : 0;
+            default:
+                return 0;
+        }
+    }
+
+    private int countInHand(String card) {
+        return game.getHand().count(card) + game.getExile().count(withName(card).and(withCounter(LIGHT_UP_THE_STAGE)));
+    }
+
+    private int countInPlay(String card) {
+        return game.getBattlefield().count(withName(card)) + countInHand(card);
+    }
+
     private void sacrificeAMoutain() {
         // preferably sacrifice a moutain that is tapped
         Permanent mountainToSac = game.getBattlefield().findFirst(withName(MOUNTAIN).and(tapped())).orElse(game.getBattlefield().findFirst(withName(MOUNTAIN)).get());
@@ -762,9 +918,7 @@ public class BurnDeckPilot extends DeckPilot<Game> implements BurnCards, GameLis
 
     boolean canPay(Mana cost) {
         // potential mana pool is current pool + untapped lands
-        Mana potentialPool = game.getPool()
-                .plus(Mana.of(0, 0, 0, (int) game.getBattlefield().count(withName(LANDS).and(untapped())), 0, 0));
-        return potentialPool.contains(cost);
+        return game.getManaCapability(MANA).mayPay(cost);
     }
 
     void produce(Mana cost) {
@@ -73,6 +73,19 @@ class GruulInfectPilot extends DeckPilot<Game> implements Seer.SpellsPlayer {
 
     private static MulliganRules rules = MulliganRules.load(GruulInfectPilot.class);
 
+    // upper bound of manaSources()
+    private static final ManaCapability.Rules MANA = ManaCapability.rules()
+            .tap(X, CRUMBLING_VESTIGE)
+            .tap(R, MOUNTAIN)
+            .tap(G, FOREST, PENDELHAVEN)
+            .land(G, FOREST)
+            .land(R, MOUNTAIN)
+            .land(new Mana[]{G, R}, CRUMBLING_VESTIGE)
+            .discard(R, SIMIAN_SPIRIT_GUIDE)
+            .sacrifice(new Mana[]{R, G}, LOTUS_PETAL);
+
+    private ManaProductionPlanner.Session planner;
+
     public GruulInfectPilot(Game game) {
         super(game);
     }
@@ -102,7 +115,9 @@ class GruulInfectPilot extends DeckPilot<Game> implements Seer.SpellsPlayer {
 
         Optional<Seer.VictoryRoute> victoryRoute = Seer.findRouteToVictory(this, RUSH);
         if (victoryRoute.isPresent()) {
-            game.log(">> I can win now with: " + victoryRoute.get());
+            if (game.isLogging()) {
+                game.log(">> I can win now with: " + victoryRoute.get());
+            }
             victoryRoute.get().play(this);
             return;
         }
@@ -120,7 +135,9 @@ class GruulInfectPilot extends DeckPilot<Game> implements Seer.SpellsPlayer {
                     if (canPay(cost)) {
                         produce(cost);
                         //
-                        game.log(">>> I can cast [" + cheapestCreature.get() + "] + [" + RECKLESS_CHARGE + "]");
+                        if (game.isLogging()) {
+                            game.log(">>> I can cast [" + cheapestCreature.get() + "] + [" + RECKLESS_CHARGE + "]");
+                        }
                         play(cheapestCreature.get());
                         play(RECKLESS_CHARGE);
                         creatures = game.getBattlefield().find(creaturesThatCanBeTapped());
@@ -236,12 +253,22 @@ class GruulInfectPilot extends DeckPilot<Game> implements Seer.SpellsPlayer {
         return sources;
     }
 
+    /**
+     * Returns the planning session on the current game (forks get their own)
+     */
+    private ManaProductionPlanner.Session planner() {
+        if (planner == null || planner.getGame() != game) {
+            planner = ManaProductionPlanner.session(game, this::manaSources);
+        }
+        return planner;
+    }
+
     boolean canPay(Mana cost) {
 //        // potential mana pool is current pool + untapped lands + petals on battlefield
 //        Mana potentialPool = game.getPool()
 //                .plus(Mana.of(0, 0, game.getBattlefield().count(withName(MANA_PRODUCERS).and(untapped())), 0, 0, 0));
 //        return potentialPool.contains(cost);
-        return ManaProductionPlanner.plan(game, manaSources(), cost).isPresent();
+        return game.getManaCapability(MANA).mayPay(cost) && planner().canPay(cost);
     }
 
     void produce(Mana cost) {
@@ -260,7 +287,7 @@ class GruulInfectPilot extends DeckPilot<Game> implements Seer.SpellsPlayer {
 //                return;
 //            }
 //        }
-        if (!ManaProductionPlanner.maybeProduce(game, manaSources(), cost)) {
+        if (!planner().maybeProduce(cost)) {
             throw new IllegalActionException("Can't produce " + cost);
         }
     }
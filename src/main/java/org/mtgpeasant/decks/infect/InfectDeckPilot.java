@@ -102,7 +102,9 @@ public class InfectDeckPilot extends DeckPilot<Game> implements Seer.SpellsPlaye
         if (game.getCurrentTurn() > 1) {
             Optional<Seer.VictoryRoute> victoryRoute = Seer.findRouteToVictory(this, BOOSTS);
             if (victoryRoute.isPresent()) {
-                game.log(">> I can win now with: " + victoryRoute.get());
+                if (game.isLogging()) {
+                    game.log(">> I can win now with: " + victoryRoute.get());
+                }
                 victoryRoute.get().play(this);
                 return;
             }
@@ -107,7 +107,9 @@ public class ReanimatorDeckPilot extends DeckPilot<Game> {
             case 2:
                 return hand.findFirst(GREATER_SANDWURM, GITAXIAN_PROBE).isPresent() || hand.findFirst(FAITHLESS_LOOTING).isPresent() && redMana >= 1;
         }
-        game.log("rea " + reanimation + "; crea " + creatures + "; discard" + discard);
+        if (game.isLogging()) {
+            game.log("rea " + reanimation + "; crea " + creatures + "; discard" + discard);
+        }
         return false;
     }
 
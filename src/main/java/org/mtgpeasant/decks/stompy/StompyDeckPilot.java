@@ -7,8 +7,7 @@ import org.mtgpeasant.perfectdeck.goldfish.event.GameEvent;
 import org.mtgpeasant.perfectdeck.goldfish.event.GameListener;
 import org.mtgpeasant.perfectdeck.mulligan.MulliganRules;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.function.Predicate;
 
 import static org.mtgpeasant.perfectdeck.common.mana.Mana.zero;
@@ -51,6 +50,10 @@ public class StompyDeckPilot extends DeckPilot<Game> implements GameListener, Se
     public static final String SYR_FAREN_THE_HENGEHAMMER = "syr faren, the hengehammer";
     public static final String GINGERBRUTE = "gingerbrute";
 
+    private static final ManaCapability.Rules MANA = ManaCapability.rules()
+            .tap(G, FOREST, LLANOWAR_ELVES, FYNDHORN_ELVES)
+            .sacrifice(ONE, ELDRAZI_SPAWN);
+
     private static final String[] CREATURES = {QUIRION_RANGER, NETTLE_SENTINEL, SKARRGAN_PIT_SKULK, VAULT_SKIRGE, NEST_INVADER, BURNING_TREE_EMISSARY, SAFEHOLD_ELITE, SILHANA_LEDGEWALKER, YOUNG_WOLF, RIVER_BOA, STRANGLEROOT_GEIST, SYR_FAREN_THE_HENGEHAMMER, LLANOWAR_ELVES, FYNDHORN_ELVES, GINGERBRUTE, ELDRAZI_SPAWN};
 
     // BOOSTS
@@ -64,6 +67,9 @@ public class StompyDeckPilot extends DeckPilot<Game> implements GameListener, Se
     // cards that allow to rush in the turn
     private static final String[] RUSH = {STRANGLEROOT_GEIST, GINGERBRUTE, CURSE_OF_PREDATION, HUNGER_OF_THE_HOWLPACK, ASPECT_OF_HYDRA, SAVAGE_SWIPE, RANCOR, VINES_OF_VASTWOOD};
 
+    // boosts that target the same creature whatever the order (aspect of hydra depends on the devotion rancor adds)
+    private static final Set<String> COMMUTING = new HashSet<>(Arrays.asList(VINES_OF_VASTWOOD, RANCOR, ASPECT_OF_HYDRA));
+
     // OTHERS
     private static final String GITAXIAN_PROBE = "gitaxian probe";
     private static final String LAND_GRANT = "land grant";
@@ -96,6 +102,22 @@ public class StompyDeckPilot extends DeckPilot<Game> implements GameListener, Se
         putOnBottomOfLibrary(game.getMulligans());
     }
 
+    @Override
+    public boolean reset() {
+        aCreatureIsDead = false;
+        return true;
+    }
+
+    @Override
+    public Object saveState() {
+        return aCreatureIsDead;
+    }
+
+    @Override
+    public void restoreState(Object state) {
+        aCreatureIsDead = (Boolean) state;
+    }
+
     @Override
     public void untapStep() {
         aCreatureIsDead = false;
@@ -119,9 +141,11 @@ public class StompyDeckPilot extends DeckPilot<Game> implements GameListener, Se
 
         // simulate if I can rush now
         if (game.getCurrentTurn() > 2) {
-            Optional<Seer.VictoryRoute> victoryRoute = Seer.findRouteToVictory(this, RUSH);
+            Optional<Seer.VictoryRoute> victoryRoute = findRouteToVictory();
             if (victoryRoute.isPresent()) {
-                game.log(">> I can win now with: " + victoryRoute.get());
+                if (game.isLogging()) {
+                    game.log(">> I can win now with: " + victoryRoute.get());
+                }
                 maybeSacrificeForHunger();
                 victoryRoute.get().play(this);
             }
@@ -185,7 +209,9 @@ public class StompyDeckPilot extends DeckPilot<Game> implements GameListener, Se
         if (game.getPool().ccm() > 0) {
             // still have mana in pool: we should consume before combat phase
             // TODO
-            game.log(">> unused pool at end of first main phase: " + game.getPool());
+            if (game.isLogging()) {
+                game.log(">> unused pool at end of first main phase: " + game.getPool());
+            }
         }
     }
 
@@ -201,7 +227,9 @@ public class StompyDeckPilot extends DeckPilot<Game> implements GameListener, Se
         attackingCreatures.stream().filter(withName(SYR_FAREN_THE_HENGEHAMMER)).forEach(syr -> {
             // find target (first "other" attacking creature)
             attackingCreatures.stream().filter(crea -> crea != syr).findFirst().ifPresent(crea -> {
-                game.log("Syr Faren ability target: " + crea);
+                if (game.isLogging()) {
+                    game.log("Syr Faren ability target: " + crea);
+                }
                 crea.addCounter(TEMP_BOOST, strength(syr));
             });
         });
@@ -284,11 +312,11 @@ public class StompyDeckPilot extends DeckPilot<Game> implements GameListener, Se
     }
 
     private int devotion() {
-        return game.getBattlefield().stream().mapToInt(this::devotion).sum();
+        return game.getBattlefield().stream().mapToInt(permanent -> devotion(permanent.getCard())).sum();
     }
 
-    private int devotion(Permanent permanent) {
-        switch (permanent.getCard()) {
+    private int devotion(String card) {
+        switch (card) {
             case QUIRION_RANGER:
             case NETTLE_SENTINEL:
             case SKARRGAN_PIT_SKULK:
@@ -313,6 +341,89 @@ public class StompyDeckPilot extends DeckPilot<Game> implements GameListener, Se
         }
     }
 
+    /**
+     * Upper bound of the damage still possible this turn (only by combat): each castable rush spell boosts the
+     * attackers as much as it can, paying spells being limited by the available mana, and each Syr Faren may double
+     * the total
+     */
+    @Override
+    public int maxDamage() {
+        if (game.getCurrentPhase() != Game.Phase.first_main) {
+            return 0;
+        }
+        List<Permanent> attackers = game.getBattlefield().find(creatureThatCanAttackOrNettle());
+        int maxAttackers = attackers.size() + game.getHand().count(STRANGLEROOT_GEIST, GINGERBRUTE);
+        int curses = game.getBattlefield().count(withName(CURSE_OF_PREDATION));
+        int maxCurses = curses + game.getHand().count(CURSE_OF_PREDATION);
+        int maxDevotion = devotion() + game.getHand().stream().mapToInt(this::devotion).sum();
+
+        int bound = curses * maxAttackers;
+        for (Permanent attacker : attackers) {
+            bound += strength(attacker);
+        }
+
+        // each rush spell costs at least one mana
+        List<Integer> boosts = new ArrayList<>();
+        for (String card : RUSH) {
+            int boost = boost(card, maxAttackers, maxCurses, maxDevotion);
+            for (int i = game.getHand().count(card); i > 0; i--) {
+                boosts.add(boost);
+            }
+        }
+        boosts.sort(Collections.reverseOrder());
+        boolean canUseQuirion = !game.isLanded() && game.getBattlefield().findFirst(withName(QUIRION_RANGER)).isPresent() && game.getBattlefield().findFirst(withName(FOREST)).isPresent();
+        int mana = game.getManaCapability(MANA).getTotal() + (canUseQuirion ? 1 : 0);
+        bound += boosts.stream().limit(mana).mapToInt(Integer::intValue).sum();
+
+        // each Syr Faren adds its own strength (at most the total)
+        for (Permanent attacker : attackers) {
+            if (attacker.getCard().equals(SYR_FAREN_THE_HENGEHAMMER)) {
+                bound *= 2;
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Max damage added by the given rush spell
+     */
+    private int boost(String card, int maxAttackers, int maxCurses, int maxDevotion) {
+        switch (card) {
+            case RANCOR:
+            case SAVAGE_SWIPE:
+                return 2;
+            case HUNGER_OF_THE_HOWLPACK:
+                return 3;
+            case VINES_OF_VASTWOOD:
+                return 4;
+            case ASPECT_OF_HYDRA:
+                return maxDevotion;
+            case CURSE_OF_PREDATION:
+                return maxAttackers;
+            // creatures with haste
+            case STRANGLEROOT_GEIST:
+                return 2 + maxCurses;
+            case GINGERBRUTE:
+                return 1 + maxCurses;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Stompy never poisons
+     */
+    @Override
+    public int maxPoison() {
+        return 0;
+    }
+
+    @Override
+    public boolean commute(String card, String other) {
+        return COMMUTING.contains(card) && COMMUTING.contains(other)
+                && !(card.equals(RANCOR) && other.equals(ASPECT_OF_HYDRA) || card.equals(ASPECT_OF_HYDRA) && other.equals(RANCOR));
+    }
+
     void putOnBottomOfLibrary(int number) {
         for (int i = 0; i < number; i++) {
             // look for an unmanaged card
@@ -356,18 +467,14 @@ public class StompyDeckPilot extends DeckPilot<Game> implements GameListener, Se
     }
 
     boolean canPay(Mana cost) {
-        // potential mana pool is current pool + untapped lands + petals on battlefield
-        boolean canUseQuirion = game.getBattlefield().findFirst(withName(QUIRION_RANGER)).isPresent() && game.getBattlefield().findFirst(withName(FOREST)).isPresent() && !game.isLanded();
-        Mana potentialPool = game.getPool()
-                .plus(Mana.of(
-                        0,
-                        0,
-                        game.getBattlefield().count(withName(FOREST).and(untapped())) + (canUseQuirion ? 1 : 0) + game.getBattlefield().count(withName(LLANOWAR_ELVES, FYNDHORN_ELVES).and(untapped())),
-                        0,
-                        0,
-                        game.getBattlefield().count(withName(ELDRAZI_SPAWN)))
-                );
-        return potentialPool.contains(cost);
+        // potential mana pool is current pool + untapped lands and elves + spawns on battlefield
+        ManaCapability capability = game.getManaCapability(MANA);
+        if (capability.mayPay(cost)) {
+            return true;
+        }
+        // Quirion Ranger can return a forest to hand to land it again
+        boolean canUseQuirion = !game.isLanded() && game.getBattlefield().findFirst(withName(QUIRION_RANGER)).isPresent() && game.getBattlefield().findFirst(withName(FOREST)).isPresent();
+        return canUseQuirion && capability.plus(G).mayPay(cost);
     }
 
     void produce(Mana cost) {
@@ -414,6 +521,13 @@ public class StompyDeckPilot extends DeckPilot<Game> implements GameListener, Se
         }
     }
 
+    /**
+     * Looks for a way to kill the opponent this turn
+     */
+    Optional<Seer.VictoryRoute> findRouteToVictory() {
+        return Seer.findRouteToVictory(this, RUSH);
+    }
+
     /**
      * Casts the first possible card from the list
      *
@@ -572,7 +686,9 @@ public class StompyDeckPilot extends DeckPilot<Game> implements GameListener, Se
                                         .orElseGet(() -> game.getBattlefield().findFirst(withType(Game.CardType.creature)).get()));
                 produce(G);
                 game.castEnchantment(card, G).tag("on:" + targetCreature.getCard());
-                game.log("target: " + targetCreature);
+                if (game.isLogging()) {
+                    game.log("target: " + targetCreature);
+                }
                 targetCreature.incrCounter(RANCOR);
                 return true;
             }
@@ -591,7 +707,9 @@ public class StompyDeckPilot extends DeckPilot<Game> implements GameListener, Se
                                 .orElseGet(() -> game.getBattlefield().findFirst(creatureThatCanAttackOrNettle()).get());
                 produce(G);
                 game.castInstant(card, G);
-                game.log("target: " + targetCreature);
+                if (game.isLogging()) {
+                    game.log("target: " + targetCreature);
+                }
                 targetCreature.addCounter(TEMP_BOOST, devotion());
                 return true;
             }
@@ -604,7 +722,9 @@ public class StompyDeckPilot extends DeckPilot<Game> implements GameListener, Se
                                 .orElseGet(() -> game.getBattlefield().findFirst(creatureThatCanAttackOrNettle().and(c -> strength(c) == 2)).get());
                 produce(G);
                 game.castSorcery(card, G);
-                game.log("target: " + targetCreature);
+                if (game.isLogging()) {
+                    game.log("target: " + targetCreature);
+                }
                 targetCreature.addCounter(TEMP_BOOST, 2);
                 return true;
             }
@@ -617,7 +737,9 @@ public class StompyDeckPilot extends DeckPilot<Game> implements GameListener, Se
                                 .orElseGet(() -> game.getBattlefield().findFirst(creatureThatCanAttackOrNettle()).get());
                 produce(G);
                 game.castInstant(card, G);
-                game.log("target: " + targetCreature);
+                if (game.isLogging()) {
+                    game.log("target: " + targetCreature);
+                }
                 targetCreature.addCounter(PERM_BOOST, aCreatureIsDead ? 3 : 1);
                 return true;
             }
@@ -630,7 +752,9 @@ public class StompyDeckPilot extends DeckPilot<Game> implements GameListener, Se
                                 .orElseGet(() -> game.getBattlefield().findFirst(creatureThatCanAttackOrNettle()).get());
                 produce(GG);
                 game.castInstant(card, GG);
-                game.log("target: " + targetCreature);
+                if (game.isLogging()) {
+                    game.log("target: " + targetCreature);
+                }
                 targetCreature.addCounter(TEMP_BOOST, 4);
                 return true;
             }
@@ -639,6 +763,11 @@ public class StompyDeckPilot extends DeckPilot<Game> implements GameListener, Se
         return false;
     }
 
+    @Override
+    public Set<GameEvent.Type> getEventTypes() {
+        return EnumSet.of(GameEvent.Type.cast);
+    }
+
     @Override
     public void onEvent(GameEvent event) {
         if (event.getType() == GameEvent.Type.cast) {
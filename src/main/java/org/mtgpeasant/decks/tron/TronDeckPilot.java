@@ -158,7 +158,9 @@ class TronDeckPilot extends DeckPilot<Game> implements Seer.SpellsPlayer {
         if (game.getPool().ccm() > 0) {
             // still have mana in pool: we should consume before combat phase
             // TODO
-            game.log(">> unused pool at end of first main phase: " + game.getPool());
+            if (game.isLogging()) {
+                game.log(">> unused pool at end of first main phase: " + game.getPool());
+            }
         }
     }
 
@@ -0,0 +1,88 @@
+package org.mtgpeasant.perfectdeck.common.cards;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns card names into small dense integer ids
+ * <p>
+ * Ids are allocated in registration order, starting from {@code 0}, and are stable for the lifetime of the process.
+ * The registry is shared by all decks so that cards declared by pilots, parsed from deck lists or created in tests all
+ * agree on their ids. It is thread-safe.
+ */
+public final class CardRegistry {
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[256];
+    private static int size = 0;
+
+    private CardRegistry() {
+    }
+
+    /**
+     * Returns the id of the given card name, registering it if needed
+     *
+     * @param name card name
+     * @return card id
+     */
+    public static int register(String name) {
+        Integer id = IDS.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (IDS) {
+            id = IDS.get(name);
+            if (id != null) {
+                return id;
+            }
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+            }
+            names[size] = name;
+            IDS.put(name, size);
+            return size++;
+        }
+    }
+
+    /**
+     * Returns the ids of the given card names, registering them if needed
+     *
+     * @param names card names
+     * @return card ids
+     */
+    public static int[] register(String... names) {
+        int[] ids = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            ids[i] = register(names[i]);
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the id of the given card name, without registering it
+     *
+     * @param name card name
+     * @return card id, or {@code -1} if the name was never registered
+     */
+    public static int idOf(String name) {
+        Integer id = IDS.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the name of the card with the given id
+     *
+     * @param id card id
+     * @return card name
+     */
+    public static String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * Returns the number of registered card names (all ids are lower than this)
+     */
+    public static int size() {
+        return IDS.size();
+    }
+}
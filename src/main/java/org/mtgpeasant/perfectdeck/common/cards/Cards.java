@@ -1,34 +1,394 @@
 package org.mtgpeasant.perfectdeck.common.cards;
 
 import com.google.common.base.Preconditions;
+import org.mtgpeasant.perfectdeck.common.utils.Zobrist;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 
-public class Cards extends ArrayDeque<String> {
+/**
+ * A collection of cards
+ * <p>
+ * Cards are stored as ids interned by the {@link CardRegistry}; the {@link String} API is a thin layer on top of the
+ * id-based one.
+ * <p>
+ * Cards are ordered (top first). {@link #indexed(Collection) Indexed} cards also maintain a per-card count, for zones
+ * that are mostly counted such as the hand or the graveyard: {@code count} and {@code contains} run in constant time.
+ */
+public abstract class Cards extends AbstractCollection<String> implements Cloneable {
+    static final int[] NO_IDS = new int[0];
 
-    Cards() {
-    }
+    // number of changes (incremented by implementations)
+    int version = 0;
 
-    Cards(Collection<? extends String> collection) {
-        super(collection);
-    }
+    // cached content hash, and version it was computed at
+    private long hash;
+    private int hashVersion = -1;
 
     /**
      * Makes a copy of this cards list
      */
     @Override
     public Cards clone() {
-        return (Cards) super.clone();
+        try {
+            return (Cards) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    /**
+     * Returns a counter that is incremented by each change of these cards
+     * <p>
+     * Used to detect changes cheaply (clones start with the version of their original).
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns a hash of the cards, regardless of their order (see {@link Zobrist})
+     * <p>
+     * Cached until the cards change.
+     */
+    public long contentHash() {
+        int current = getVersion();
+        if (hashVersion != current) {
+            long sum = 0L;
+            for (int slot = 0, slots = slots(); slot < slots; slot++) {
+                sum += Zobrist.key(0, slotId(slot)) * slotCount(slot);
+            }
+            hash = sum;
+            hashVersion = getVersion();
+        }
+        return hash;
+    }
+
+    // =================================================================================================================
+    // === id-based API
+    // =================================================================================================================
+
+    /**
+     * Returns the number of cards with the given id
+     */
+    public abstract int countId(int id);
+
+    /**
+     * Removes one card with the given id
+     *
+     * @return {@code true} if a card was removed
+     */
+    public abstract boolean removeId(int id);
+
+    /**
+     * Puts a card on top
+     */
+    public abstract void addFirstId(int id);
+
+    /**
+     * Puts a card at the bottom
+     */
+    public abstract void addLastId(int id);
+
+    /**
+     * Returns the id of the top card
+     *
+     * @throws NoSuchElementException if empty
+     */
+    public abstract int getFirstId();
+
+    /**
+     * Returns the id of the bottom card
+     *
+     * @throws NoSuchElementException if empty
+     */
+    public abstract int getLastId();
+
+    /**
+     * Removes and returns the id of the top card
+     *
+     * @throws NoSuchElementException if empty
+     */
+    public int removeFirstId() {
+        int id = getFirstId();
+        removeId(id);
+        return id;
     }
 
+    /**
+     * Removes and returns the id of the bottom card
+     *
+     * @throws NoSuchElementException if empty
+     */
+    public int removeLastId() {
+        int id = getLastId();
+        removeId(id);
+        return id;
+    }
+
+    /**
+     * Determines whether this contains a card with the given id
+     */
+    public boolean containsId(int id) {
+        return countId(id) > 0;
+    }
+
+    /**
+     * Determines whether this contains a card with one of the given ids
+     */
+    public boolean containsAnyId(int... ids) {
+        for (int id : ids) {
+            if (containsId(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of cards with the given ids
+     *
+     * @param ids distinct card ids
+     */
+    public int countIds(int... ids) {
+        int count = 0;
+        for (int id : ids) {
+            count += countId(id);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the ids of the cards (in iteration order)
+     */
+    public int[] toIds() {
+        if (isEmpty()) {
+            return NO_IDS;
+        }
+        int[] ids = new int[size()];
+        int i = 0;
+        for (int slot = 0, slots = slots(); slot < slots; slot++) {
+            int id = slotId(slot);
+            for (int n = slotCount(slot); n > 0; n--) {
+                ids[i++] = id;
+            }
+        }
+        return ids;
+    }
+
+    /*
+     * Allocation-free iteration: cards are laid out in slots, each holding a given number of copies of the same card.
+     */
+
+    /**
+     * Returns the number of slots
+     */
+    abstract int slots();
+
+    /**
+     * Returns the id of the card in the given slot
+     */
+    abstract int slotId(int slot);
+
+    /**
+     * Returns the number of cards in the given slot (may be {@code 0})
+     */
+    abstract int slotCount(int slot);
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            int slot = -1;
+            int remaining = 0;
+            int lastSlot = -1;
+
+            @Override
+            public boolean hasNext() {
+                if (remaining > 0) {
+                    return true;
+                }
+                for (int next = slot + 1, slots = slots(); next < slots; next++) {
+                    if (slotCount(next) > 0) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public String next() {
+                if (remaining == 0) {
+                    int slots = slots();
+                    do {
+                        slot++;
+                        if (slot >= slots) {
+                            throw new NoSuchElementException();
+                        }
+                        remaining = slotCount(slot);
+                    } while (remaining == 0);
+                }
+                remaining--;
+                lastSlot = slot;
+                return CardRegistry.name(slotId(slot));
+            }
+
+            @Override
+            public void remove() {
+                if (lastSlot < 0) {
+                    throw new IllegalStateException();
+                }
+                removeSlot(lastSlot);
+                // following cards moved one slot up
+                slot--;
+                lastSlot = -1;
+            }
+        };
+    }
+
+    /**
+     * Removes one card from the given slot
+     */
+    abstract void removeSlot(int slot);
+
+    /**
+     * Returns the ids of already registered card names (unknown names are dropped as no card can match them,
+     * duplicates are dropped too)
+     */
+    static int[] idsOf(Collection<?> names) {
+        int[] ids = new int[names.size()];
+        int count = 0;
+        for (Object name : names) {
+            int id = name instanceof String ? CardRegistry.idOf((String) name) : -1;
+            if (id >= 0 && !in(id, ids, count)) {
+                ids[count++] = id;
+            }
+        }
+        return count == ids.length ? ids : Arrays.copyOf(ids, count);
+    }
+
+    static boolean in(int id, int[] ids, int length) {
+        for (int i = 0; i < length; i++) {
+            if (ids[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // =================================================================================================================
+    // === deque-like API
+    // =================================================================================================================
+
+    @Override
+    public boolean add(String card) {
+        addLast(card);
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends String> cards) {
+        if (cards instanceof Cards) {
+            Cards other = (Cards) cards;
+            for (int slot = 0, slots = other.slots(); slot < slots; slot++) {
+                int id = other.slotId(slot);
+                for (int n = other.slotCount(slot); n > 0; n--) {
+                    addLastId(id);
+                }
+            }
+            return !other.isEmpty();
+        }
+        return super.addAll(cards);
+    }
+
+    public void addFirst(String card) {
+        addFirstId(CardRegistry.register(Objects.requireNonNull(card)));
+    }
+
+    public void addLast(String card) {
+        addLastId(CardRegistry.register(Objects.requireNonNull(card)));
+    }
+
+    public void push(String card) {
+        addFirst(card);
+    }
+
+    public String getFirst() {
+        return CardRegistry.name(getFirstId());
+    }
+
+    public String getLast() {
+        return CardRegistry.name(getLastId());
+    }
+
+    public String peekFirst() {
+        return isEmpty() ? null : getFirst();
+    }
+
+    public String peek() {
+        return peekFirst();
+    }
+
+    public String removeFirst() {
+        return CardRegistry.name(removeFirstId());
+    }
+
+    public String removeLast() {
+        return CardRegistry.name(removeLastId());
+    }
+
+    public String pop() {
+        return removeFirst();
+    }
+
+    public String pollFirst() {
+        return isEmpty() ? null : removeFirst();
+    }
+
+    @Override
+    public boolean contains(Object card) {
+        if (!(card instanceof String)) {
+            return false;
+        }
+        int id = CardRegistry.idOf((String) card);
+        return id >= 0 && containsId(id);
+    }
+
+    @Override
+    public boolean remove(Object card) {
+        if (!(card instanceof String)) {
+            return false;
+        }
+        int id = CardRegistry.idOf((String) card);
+        return id >= 0 && removeId(id);
+    }
+
+    // =================================================================================================================
+    // === cards API
+    // =================================================================================================================
+
     /**
      * Returns a copy of this, randomly shuffled
      */
     public Cards shuffle() {
-        List<String> copy = new ArrayList<>(this);
-        Collections.shuffle(copy);
-        return new Cards(copy);
+        return shuffle(ThreadLocalRandom.current());
+    }
+
+    /**
+     * Returns a copy of this, randomly shuffled with the given random generator
+     *
+     * @param random random generator
+     */
+    public Cards shuffle(RandomGenerator random) {
+        int[] shuffled = toIds();
+        for (int i = shuffled.length; i > 1; i--) {
+            int j = random.nextInt(i);
+            int tmp = shuffled[i - 1];
+            shuffled[i - 1] = shuffled[j];
+            shuffled[j] = tmp;
+        }
+        return ofIds(shuffled);
     }
 
     /**
@@ -39,12 +399,13 @@ public class Cards extends ArrayDeque<String> {
      */
     public Cards look(int number) {
         Preconditions.checkArgument(number <= size(), "Can't look more cards than size (" + number + ">" + size() + ")");
-        Cards selected = new Cards();
-        int i = 0;
-        Iterator<String> cards = this.iterator();
-        while (i < number && cards.hasNext()) {
-            selected.add(cards.next());
-            i++;
+        Cards selected = new OrderedCards(number);
+        for (int slot = 0, slots = slots(); slot < slots && number > 0; slot++) {
+            int id = slotId(slot);
+            for (int n = Math.min(number, slotCount(slot)); n > 0; n--) {
+                selected.addLastId(id);
+                number--;
+            }
         }
         return selected;
     }
@@ -57,9 +418,9 @@ public class Cards extends ArrayDeque<String> {
      */
     public Cards draw(int number) {
         Preconditions.checkArgument(number <= size(), "Can't draw more cards than available (" + number + ">" + size() + ")");
-        Cards selected = new Cards();
+        Cards selected = new OrderedCards(number);
         for (int i = 0; i < number; i++) {
-            selected.add(removeFirst());
+            selected.addLastId(removeFirstId());
         }
         return selected;
     }
@@ -106,9 +467,11 @@ public class Cards extends ArrayDeque<String> {
      * @return found card, or {@code null} if none was found
      */
     public Optional<String> findFirstNotIn(Collection<String> cards) {
-        for (String card : this) {
-            if (!cards.contains(card)) {
-                return Optional.of(card);
+        int[] ignored = idsOf(cards);
+        for (int slot = 0, slots = slots(); slot < slots; slot++) {
+            int id = slotId(slot);
+            if (slotCount(slot) > 0 && !in(id, ignored, ignored.length)) {
+                return Optional.of(CardRegistry.name(id));
             }
         }
         return Optional.empty();
@@ -131,13 +494,7 @@ public class Cards extends ArrayDeque<String> {
      * @return number of found cards
      */
     public int count(Collection<String> cards) {
-        int count = 0;
-        for (String card : this) {
-            if (cards.contains(card)) {
-                count++;
-            }
-        }
-        return count;
+        return countIds(idsOf(cards));
     }
 
     /**
@@ -157,24 +514,61 @@ public class Cards extends ArrayDeque<String> {
      * @return found cards
      */
     public Cards findAll(Collection cards) {
-        Cards selected = new Cards();
-        for (String card : this) {
-            if (cards.contains(card)) {
-                selected.add(card);
+        int[] wanted = idsOf(cards);
+        Cards selected = new OrderedCards();
+        for (int slot = 0, slots = slots(); slot < slots; slot++) {
+            int id = slotId(slot);
+            if (in(id, wanted, wanted.length)) {
+                for (int n = slotCount(slot); n > 0; n--) {
+                    selected.addLastId(id);
+                }
             }
         }
         return selected;
     }
 
+    /**
+     * Returns an indexed copy of this (same order)
+     */
+    public Cards toIndexed() {
+        Cards copy = new OrderedCards(size(), true);
+        copy.addAll(this);
+        return copy;
+    }
+
     public static Cards of(String... cards) {
-        return new Cards(Arrays.asList(cards));
+        return new OrderedCards(Arrays.asList(cards));
     }
 
     public static Cards of(Collection<String> cards) {
-        return new Cards(cards);
+        return new OrderedCards(cards);
+    }
+
+    public static Cards ofIds(int... ids) {
+        Cards cards = new OrderedCards(ids.length);
+        for (int id : ids) {
+            cards.addLastId(id);
+        }
+        return cards;
     }
 
     public static Cards empty() {
-        return new Cards();
+        return new OrderedCards();
+    }
+
+    /**
+     * Returns new indexed ordered cards (see {@link Cards})
+     */
+    public static Cards indexed(String... cards) {
+        return indexed(Arrays.asList(cards));
+    }
+
+    /**
+     * Returns new indexed ordered cards (see {@link Cards})
+     */
+    public static Cards indexed(Collection<String> cards) {
+        Cards indexed = new OrderedCards(cards.size(), true);
+        indexed.addAll(cards);
+        return indexed;
     }
 }
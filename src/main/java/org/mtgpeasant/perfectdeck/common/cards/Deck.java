@@ -116,8 +116,8 @@ public class Deck {
 
     public static Deck parse(Reader input) throws IOException {
         BufferedReader reader = new BufferedReader(input);
-        Cards side = new Cards();
-        Cards main = new Cards();
+        Cards side = Cards.empty();
+        Cards main = Cards.empty();
         String line = null;
         boolean[] isReadingSideboard = new boolean[]{false};
         while ((line = reader.readLine()) != null) {
@@ -0,0 +1,282 @@
+package org.mtgpeasant.perfectdeck.common.cards;
+
+import org.mtgpeasant.perfectdeck.common.utils.Seeds;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A lazily shuffled library
+ * <p>
+ * The library is made of three parts (from top to bottom):
+ * <ol>
+ * <li>the cards whose position is known (revealed, drawn then put back on top, ...),</li>
+ * <li>the shuffled cards, whose order is only decided when they are needed (partial Fisher-Yates shuffle),</li>
+ * <li>the cards put on the bottom.</li>
+ * </ol>
+ * Drawing, looking or tutoring a few cards thus only costs a few random draws, whatever the library size.
+ * <p>
+ * Shuffled cards are picked with random numbers derived from a seed and the number of cards revealed so far (not from a
+ * stateful generator): a clone reveals the very same cards order as its original, still lazily.
+ * <p>
+ * Clones share their arrays until one of them writes to it (copy-on-write).
+ */
+public final class Library extends Cards {
+    private final int[] deck;
+    private int[] shuffled;
+    private int shuffledCount;
+    private boolean shared = false;
+    private OrderedCards top = new OrderedCards();
+    private OrderedCards bottom = new OrderedCards();
+    // shuffle seed, and number of random picks made with it
+    private long seed;
+    private int picks = 0;
+
+    private Library(int[] deck, RandomGenerator random) {
+        this.deck = deck;
+        this.shuffled = deck.clone();
+        this.shuffledCount = deck.length;
+        this.seed = random.nextLong();
+    }
+
+    /**
+     * Creates a shuffled library with the given cards
+     *
+     * @param cards  library cards
+     * @param random random generator used to shuffle
+     */
+    public static Library of(Cards cards, RandomGenerator random) {
+        return new Library(cards.toIds(), random);
+    }
+
+    /**
+     * Puts back all the original cards in the library and shuffles it (in place)
+     * <p>
+     * Used to take a mulligan: the next random picks are used, for a new order.
+     */
+    public void reset() {
+        version++;
+        own();
+        System.arraycopy(deck, 0, shuffled, 0, deck.length);
+        shuffledCount = deck.length;
+        top.clear();
+        bottom.clear();
+    }
+
+    /**
+     * Same as {@link #reset()}, with a new seed drawn from the given random generator
+     * <p>
+     * Used to play a new game with the same library instance.
+     *
+     * @param random random generator used to shuffle
+     */
+    public void reset(RandomGenerator random) {
+        this.seed = random.nextLong();
+        this.picks = 0;
+        reset();
+    }
+
+    /**
+     * Reveals shuffled cards until the given position (from top) is known, or no shuffled card remains
+     */
+    private void reveal(int index) {
+        while (top.size() <= index && shuffledCount > 0) {
+            own();
+            int pick = (int) ((Seeds.seed(seed, picks++) >>> 1) % shuffledCount);
+            int id = shuffled[pick];
+            shuffled[pick] = shuffled[--shuffledCount];
+            top.addLastId(id);
+        }
+    }
+
+    /**
+     * Reveals all shuffled cards: the whole library order is fixed
+     */
+    public void revealAll() {
+        reveal(size());
+    }
+
+    /**
+     * Makes sure the shuffled cards array can be written to
+     */
+    private void own() {
+        if (shared) {
+            shuffled = shuffled.clone();
+            shared = false;
+        }
+    }
+
+    @Override
+    public Library clone() {
+        Library clone = (Library) super.clone();
+        shared = true;
+        clone.shared = true;
+        clone.top = top.clone();
+        clone.bottom = bottom.clone();
+        return clone;
+    }
+
+    /**
+     * Returns a new library with the same cards, shuffled
+     */
+    @Override
+    public Library shuffle(RandomGenerator random) {
+        return new Library(toIdsUnrevealed(), random);
+    }
+
+    /**
+     * Returns all card ids, without revealing shuffled cards
+     */
+    private int[] toIdsUnrevealed() {
+        int[] ids = new int[size()];
+        int i = 0;
+        for (int slot = 0; slot < top.size(); slot++) {
+            ids[i++] = top.slotId(slot);
+        }
+        System.arraycopy(shuffled, 0, ids, i, shuffledCount);
+        i += shuffledCount;
+        for (int slot = 0; slot < bottom.size(); slot++) {
+            ids[i++] = bottom.slotId(slot);
+        }
+        return ids;
+    }
+
+    /**
+     * Includes changes of the known cards (revealing cards also counts as a change)
+     */
+    @Override
+    public int getVersion() {
+        return version + top.getVersion() + bottom.getVersion();
+    }
+
+    @Override
+    public int size() {
+        return top.size() + shuffledCount + bottom.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public void clear() {
+        version++;
+        shuffledCount = 0;
+        top.clear();
+        bottom.clear();
+    }
+
+    @Override
+    int slots() {
+        return size();
+    }
+
+    @Override
+    int slotId(int slot) {
+        reveal(slot);
+        return slot < top.size() ? top.slotId(slot) : bottom.slotId(slot - top.size());
+    }
+
+    @Override
+    int slotCount(int slot) {
+        return 1;
+    }
+
+    @Override
+    void removeSlot(int slot) {
+        reveal(slot);
+        if (slot < top.size()) {
+            top.removeSlot(slot);
+        } else {
+            bottom.removeSlot(slot - top.size());
+        }
+    }
+
+    @Override
+    public int countId(int id) {
+        int count = top.countId(id) + bottom.countId(id);
+        for (int i = 0; i < shuffledCount; i++) {
+            if (shuffled[i] == id) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes one card with the given id
+     * <p>
+     * Cards with a known position are searched first, then shuffled cards, then cards on the bottom.
+     */
+    @Override
+    public boolean removeId(int id) {
+        if (top.removeId(id)) {
+            return true;
+        }
+        for (int i = 0; i < shuffledCount; i++) {
+            if (shuffled[i] == id) {
+                version++;
+                own();
+                shuffled[i] = shuffled[--shuffledCount];
+                return true;
+            }
+        }
+        return bottom.removeId(id);
+    }
+
+    @Override
+    public void addFirstId(int id) {
+        top.addFirstId(id);
+    }
+
+    @Override
+    public void addLastId(int id) {
+        bottom.addLastId(id);
+    }
+
+    @Override
+    public int getFirstId() {
+        reveal(0);
+        return top.isEmpty() ? bottom.getFirstId() : top.getFirstId();
+    }
+
+    @Override
+    public int getLastId() {
+        if (!bottom.isEmpty()) {
+            return bottom.getLastId();
+        }
+        reveal(top.size() + shuffledCount - 1);
+        return top.getLastId();
+    }
+
+    @Override
+    public int removeFirstId() {
+        reveal(0);
+        return top.isEmpty() ? bottom.removeFirstId() : top.removeFirstId();
+    }
+
+    @Override
+    public int removeLastId() {
+        if (!bottom.isEmpty()) {
+            return bottom.removeLastId();
+        }
+        reveal(top.size() + shuffledCount - 1);
+        return top.removeLastId();
+    }
+
+    /**
+     * Prints the cards whose position is known, and the number of shuffled ones (without revealing them)
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (String card : top) {
+            sb.append(card).append(", ");
+        }
+        sb.append("<").append(shuffledCount).append(" shuffled>");
+        for (String card : bottom) {
+            sb.append(", ").append(card);
+        }
+        return sb.append("]").toString();
+    }
+}
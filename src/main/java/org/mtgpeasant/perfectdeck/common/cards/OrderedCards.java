@@ -0,0 +1,254 @@
+package org.mtgpeasant.perfectdeck.common.cards;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+
+/**
+ * Ordered cards (top first), backed by a circular buffer of card ids
+ * <p>
+ * When indexed, the count of each card id is also maintained: {@code count} and {@code contains} then run in constant
+ * time.
+ * <p>
+ * Clones share the buffer (and index) until one of them writes to it (copy-on-write).
+ */
+final class OrderedCards extends Cards {
+    private int[] ids;
+    private int head = 0;
+    private int size = 0;
+    private boolean shared = false;
+    // count of each card id (null if not indexed)
+    private int[] counts;
+
+    OrderedCards() {
+        this(16);
+    }
+
+    OrderedCards(int capacity) {
+        ids = new int[Math.max(16, capacity)];
+    }
+
+    OrderedCards(int capacity, boolean indexed) {
+        this(capacity);
+        if (indexed) {
+            counts = new int[16];
+        }
+    }
+
+    OrderedCards(Collection<? extends String> collection) {
+        this(collection.size());
+        addAll(collection);
+    }
+
+    @Override
+    public OrderedCards clone() {
+        OrderedCards clone = (OrderedCards) super.clone();
+        shared = true;
+        clone.shared = true;
+        return clone;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        version++;
+        if (counts != null && size > 0) {
+            own();
+            Arrays.fill(counts, 0);
+        }
+        head = 0;
+        size = 0;
+    }
+
+    private int idAt(int index) {
+        return ids[(head + index) % ids.length];
+    }
+
+    @Override
+    int slots() {
+        return size;
+    }
+
+    @Override
+    int slotId(int slot) {
+        return idAt(slot);
+    }
+
+    @Override
+    int slotCount(int slot) {
+        return 1;
+    }
+
+    /**
+     * Makes sure the buffer (and index) can be written to
+     */
+    private void own() {
+        if (shared) {
+            ids = ids.clone();
+            if (counts != null) {
+                counts = counts.clone();
+            }
+            shared = false;
+        }
+    }
+
+    private void indexAdded(int id) {
+        if (counts != null) {
+            if (id >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(id + 1, counts.length * 2));
+            }
+            counts[id]++;
+        }
+    }
+
+    private void indexRemoved(int id) {
+        if (counts != null) {
+            counts[id]--;
+        }
+    }
+
+    @Override
+    void removeSlot(int slot) {
+        version++;
+        own();
+        indexRemoved(idAt(slot));
+        for (int i = slot; i < size - 1; i++) {
+            ids[(head + i) % ids.length] = idAt(i + 1);
+        }
+        size--;
+    }
+
+    @Override
+    public int countId(int id) {
+        if (counts != null) {
+            return id < counts.length ? counts[id] : 0;
+        }
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (idAt(i) == id) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean containsId(int id) {
+        return counts != null ? countId(id) > 0 : indexOfId(id) >= 0;
+    }
+
+    @Override
+    public int countIds(int... ids) {
+        int count = 0;
+        if (counts != null) {
+            for (int id : ids) {
+                count += countId(id);
+            }
+            return count;
+        }
+        for (int i = 0; i < size; i++) {
+            if (in(idAt(i), ids, ids.length)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean removeId(int id) {
+        int index = counts != null && countId(id) == 0 ? -1 : indexOfId(id);
+        if (index < 0) {
+            return false;
+        }
+        removeSlot(index);
+        return true;
+    }
+
+    @Override
+    public void addFirstId(int id) {
+        version++;
+        own();
+        ensureCapacity();
+        head = (head - 1 + ids.length) % ids.length;
+        ids[head] = id;
+        size++;
+        indexAdded(id);
+    }
+
+    @Override
+    public void addLastId(int id) {
+        version++;
+        own();
+        ensureCapacity();
+        ids[(head + size) % ids.length] = id;
+        size++;
+        indexAdded(id);
+    }
+
+    @Override
+    public int getFirstId() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return ids[head];
+    }
+
+    @Override
+    public int getLastId() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return idAt(size - 1);
+    }
+
+    @Override
+    public int removeFirstId() {
+        int id = getFirstId();
+        version++;
+        own();
+        indexRemoved(id);
+        head = (head + 1) % ids.length;
+        size--;
+        return id;
+    }
+
+    @Override
+    public int removeLastId() {
+        int id = getLastId();
+        version++;
+        own();
+        indexRemoved(id);
+        size--;
+        return id;
+    }
+
+    private int indexOfId(int id) {
+        for (int i = 0; i < size; i++) {
+            if (idAt(i) == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void ensureCapacity() {
+        if (size == ids.length) {
+            int[] grown = new int[ids.length * 2];
+            for (int i = 0; i < size; i++) {
+                grown[i] = idAt(i);
+            }
+            ids = grown;
+            head = 0;
+            shared = false;
+        }
+    }
+}
@@ -4,10 +4,25 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import lombok.Value;
 
-import java.util.Objects;
-
 @Value
 public class Mana {
+    // packed form: one 10 bits lane per counter (B, U, G, R, W then generic X), the upper bit of each lane being a
+    // guard that catches borrows and overflows in SWAR operations
+    private static final int LANE_BITS = 10;
+    private static final int LANES = 6;
+    private static final int X_LANE = 5;
+    private static final long LANE_MASK = (1L << (LANE_BITS - 1)) - 1;
+    private static final long GUARDS = lanes(1L << (LANE_BITS - 1));
+    private static final long COLORS = (1L << (X_LANE * LANE_BITS)) - 1;
+    private static final long SMALL = lanes(3L);
+    /**
+     * Max amount of mana of each color (or generic) in a packed mana
+     */
+    public static final int MAX = (int) LANE_MASK;
+
+    // cached views of small amounts of mana (up to 3 of each)
+    private static final Mana[] CACHE = new Mana[1 << (2 * LANES)];
+
     private static final Mana B = of(1, 0, 0, 0, 0, 0);
     private static final Mana U = of(0, 1, 0, 0, 0, 0);
     private static final Mana G = of(0, 0, 1, 0, 0, 0);
@@ -65,26 +80,18 @@ public class Mana {
         return W;
     }
 
-    final int b;
-    final int u;
-    final int g;
-    final int r;
-    final int w;
-    final int x;
+    final long packed;
 
-    private Mana(int b, int u, int g, int r, int w, int x) {
-        Preconditions.checkArgument(b >= 0, "Cannot have negative amount of B");
-        Preconditions.checkArgument(u >= 0, "Cannot have negative amount of U");
-        Preconditions.checkArgument(g >= 0, "Cannot have negative amount of G");
-        Preconditions.checkArgument(r >= 0, "Cannot have negative amount of R");
-        Preconditions.checkArgument(w >= 0, "Cannot have negative amount of W");
-        Preconditions.checkArgument(x >= 0, "Cannot have negative amount of X");
-        this.b = b;
-        this.u = u;
-        this.g = g;
-        this.r = r;
-        this.w = w;
-        this.x = x;
+    private Mana(long packed) {
+        this.packed = packed;
+    }
+
+    private static long lanes(long value) {
+        long lanes = 0L;
+        for (int lane = 0; lane < LANES; lane++) {
+            lanes |= value << (lane * LANE_BITS);
+        }
+        return lanes;
     }
 
     public static Mana of(String mana) {
@@ -133,30 +140,226 @@ public class Mana {
     }
 
     public static Mana of(int b, int u, int g, int r, int w, int x) {
-        return new Mana(b, u, g, r, w, x);
+        return of(pack(b, u, g, r, w, x));
+    }
+
+    /**
+     * Returns the mana with the given packed form
+     * <p>
+     * Small amounts of mana are cached: no allocation
+     */
+    public static Mana of(long packed) {
+        if ((packed & ~SMALL) != 0) {
+            return new Mana(packed);
+        }
+        int index = 0;
+        for (int lane = 0; lane < LANES; lane++) {
+            index |= (int) (packed >>> (lane * LANE_BITS) & 3) << (2 * lane);
+        }
+        Mana mana = CACHE[index];
+        if (mana == null) {
+            mana = new Mana(packed);
+            CACHE[index] = mana;
+        }
+        return mana;
+    }
+
+    // =================================================================================================================
+    // === static (allocation free) API over packed mana
+    // =================================================================================================================
+
+    /**
+     * Packs the given amounts of mana in a {@code long}
+     */
+    public static long pack(int b, int u, int g, int r, int w, int x) {
+        Preconditions.checkArgument(b >= 0, "Cannot have negative amount of B");
+        Preconditions.checkArgument(u >= 0, "Cannot have negative amount of U");
+        Preconditions.checkArgument(g >= 0, "Cannot have negative amount of G");
+        Preconditions.checkArgument(r >= 0, "Cannot have negative amount of R");
+        Preconditions.checkArgument(w >= 0, "Cannot have negative amount of W");
+        Preconditions.checkArgument(x >= 0, "Cannot have negative amount of X");
+        Preconditions.checkArgument(b <= MAX && u <= MAX && g <= MAX && r <= MAX && w <= MAX && x <= MAX, "Cannot have more than %s mana of each type", MAX);
+        return b
+                | (long) u << LANE_BITS
+                | (long) g << (2 * LANE_BITS)
+                | (long) r << (3 * LANE_BITS)
+                | (long) w << (4 * LANE_BITS)
+                | (long) x << (X_LANE * LANE_BITS);
+    }
+
+    /**
+     * Returns the amount of mana in the given lane of a packed mana (0: B, 1: U, 2: G, 3: R, 4: W, 5: X)
+     */
+    private static int lane(long packed, int lane) {
+        return (int) (packed >>> (lane * LANE_BITS) & LANE_MASK);
+    }
+
+    /**
+     * Returns the converted mana cost of a packed mana
+     */
+    public static int ccm(long packed) {
+        int ccm = 0;
+        for (int lane = 0; lane < LANES; lane++) {
+            ccm += lane(packed, lane);
+        }
+        return ccm;
+    }
+
+    /**
+     * Determines whether the packed mana pool contains the given packed cost (generic cost may be paid with colors)
+     */
+    public static boolean contains(long pool, long cost) {
+        // a guard bit is cleared by a borrow: some color is missing
+        return (((pool | GUARDS) - (cost & COLORS)) & GUARDS) == GUARDS && ccm(pool) >= ccm(cost);
+    }
+
+    /**
+     * Adds two packed manas
+     *
+     * @throws IllegalArgumentException if some amount exceeds {@link #MAX}
+     */
+    public static long plus(long mana, long other) {
+        long sum = mana + other;
+        if ((sum & GUARDS) != 0) {
+            throw new IllegalArgumentException("Can't add " + of(other) + " mana to " + of(mana) + ": too much mana");
+        }
+        return sum;
+    }
+
+    /**
+     * Removes the given packed cost from the packed mana pool (generic cost is paid with generic mana first, then
+     * colors in B, U, G, R, W order)
+     *
+     * @throws IllegalArgumentException if the pool doesn't contain the cost
+     */
+    public static long minus(long pool, long cost) {
+        if (!contains(pool, cost)) {
+            throw new IllegalArgumentException("Can't remove " + of(cost) + " mana from " + of(pool));
+        }
+        long rest = pool - (cost & COLORS);
+        return payGeneric(rest, lane(cost, X_LANE));
+    }
+
+    /**
+     * Removes the given packed cost from the packed mana pool, paying generic cost preferably with mana that is not
+     * needed to pay the colors of the packed {@code keep} mana
+     *
+     * @throws IllegalArgumentException if the pool doesn't contain the cost
+     */
+    public static long minus(long pool, long cost, long keep) {
+        if (!contains(pool, cost)) {
+            throw new IllegalArgumentException("Can't remove " + of(cost) + " mana from " + of(pool));
+        }
+        long rest = pool - (cost & COLORS);
+        long spare = rest - min(rest, keep & COLORS);
+        long paid = spare - payGeneric(spare, lane(cost, X_LANE));
+        return payGeneric(rest - paid, lane(cost, X_LANE) - ccm(paid));
+    }
+
+    /**
+     * Pays the given generic amount from the packed mana (as much as possible): with generic mana first, then with
+     * colors in B, U, G, R, W order
+     *
+     * @return the rest
+     */
+    private static long payGeneric(long mana, int generic) {
+        int paid = Math.min(lane(mana, X_LANE), generic);
+        mana -= (long) paid << (X_LANE * LANE_BITS);
+        generic -= paid;
+        for (int lane = 0; generic > 0 && lane < X_LANE; lane++) {
+            paid = Math.min(lane(mana, lane), generic);
+            mana -= (long) paid << (lane * LANE_BITS);
+            generic -= paid;
+        }
+        return mana;
+    }
+
+    /**
+     * Lane-wise minimum of two packed manas
+     */
+    private static long min(long mana, long other) {
+        long min = 0L;
+        for (int lane = 0; lane < LANES; lane++) {
+            min |= (long) Math.min(lane(mana, lane), lane(other, lane)) << (lane * LANE_BITS);
+        }
+        return min;
+    }
+
+    /**
+     * Lane-wise maximum of two packed manas
+     */
+    public static long max(long mana, long other) {
+        long max = 0L;
+        for (int lane = 0; lane < LANES; lane++) {
+            max |= (long) Math.max(lane(mana, lane), lane(other, lane)) << (lane * LANE_BITS);
+        }
+        return max;
+    }
+
+    /**
+     * Returns the part of the packed cost that can be paid by the packed mana pool (see {@link #extract(Mana)})
+     */
+    public static long extracted(long pool, long cost) {
+        long min = min(pool, cost);
+        long rest = pool - min;
+        // pay remaining generic cost with remaining colors
+        return min + rest - payGeneric(rest, lane(cost - min, X_LANE));
+    }
+
+    /**
+     * Returns the part of the packed cost that can't be paid by the packed mana pool (see {@link #extract(Mana)})
+     */
+    public static long notExtracted(long pool, long cost) {
+        long min = min(pool, cost);
+        long rest = pool - min;
+        long notExtracted = cost - min;
+        // pay remaining generic cost with remaining colors
+        int paid = ccm(rest) - ccm(payGeneric(rest, lane(notExtracted, X_LANE)));
+        return notExtracted - ((long) paid << (X_LANE * LANE_BITS));
+    }
+
+    // =================================================================================================================
+    // === object API (view over the packed form)
+    // =================================================================================================================
+
+    public int getB() {
+        return lane(packed, 0);
+    }
+
+    public int getU() {
+        return lane(packed, 1);
+    }
+
+    public int getG() {
+        return lane(packed, 2);
+    }
+
+    public int getR() {
+        return lane(packed, 3);
+    }
+
+    public int getW() {
+        return lane(packed, 4);
+    }
+
+    public int getX() {
+        return lane(packed, X_LANE);
     }
 
     public int ccm() {
-        return b + u + g + r + w + x;
+        return ccm(packed);
     }
 
     public boolean contains(Mana other) {
-        return b >= other.b
-                && u >= other.u
-                && g >= other.g
-                && r >= other.r
-                && w >= other.w
-                && x >= other.x + other.b - b + other.u - u + other.g - g + other.r - r + other.w - w;
+        return contains(packed, other.packed);
     }
 
     public Mana plus(Mana other) {
-        return of(b + other.b, u + other.u, g + other.g, r + other.r, w + other.w, x + other.x);
+        return of(plus(packed, other.packed));
     }
 
     public Mana minus(Mana other) {
-        Extraction pull = extract(other);
-        Preconditions.checkArgument(pull.notExtracted.isEmpty(), "Can't remove " + other + " mana from " + this);
-        return pull.rest;
+        return of(minus(packed, other.packed));
     }
 
     /**
@@ -172,65 +375,8 @@ public class Mana {
      * </pre>
      */
     public Extraction extract(Mana other) {
-        // 1: remove colors
-        Mana removed = of(
-                Math.min(b, other.b),
-                Math.min(u, other.u),
-                Math.min(g, other.g),
-                Math.min(r, other.r),
-                Math.min(w, other.w),
-                Math.min(x, other.x)
-        );
-        Mana rest = of(
-                b - removed.b,
-                u - removed.u,
-                g - removed.g,
-                r - removed.r,
-                w - removed.w,
-                x - removed.x
-        );
-        Mana notRemoved = of(
-                other.b - removed.b,
-                other.u - removed.u,
-                other.g - removed.g,
-                other.r - removed.r,
-                other.w - removed.w,
-                other.x - removed.x
-        );
-
-        // 2: pay remaining uncolors with coloured
-        if (notRemoved.getX() > 0 && rest.ccm() > 0) {
-            if (notRemoved.getX() >= rest.ccm()) {
-                // we can consume all coloured from the rest
-                removed = removed.plus(rest);
-                notRemoved = notRemoved.minus(of(0, 0, 0, 0, 0, rest.ccm()));
-                rest = zero();
-            } else {
-                // we consume partly
-                while (notRemoved.getX() > 0 && rest.ccm() > 0) {
-                    // TODO: which color to choose ?
-                    if (rest.getB() > 0) {
-                        rest = rest.minus(B);
-                        removed = removed.plus(B);
-                    } else if (rest.getU() > 0) {
-                        rest = rest.minus(U);
-                        removed = removed.plus(U);
-                    } else if (rest.getG() > 0) {
-                        rest = rest.minus(G);
-                        removed = removed.plus(G);
-                    } else if (rest.getR() > 0) {
-                        rest = rest.minus(R);
-                        removed = removed.plus(R);
-                    } else if (rest.getW() > 0) {
-                        rest = rest.minus(W);
-                        removed = removed.plus(W);
-                    }
-                    notRemoved = notRemoved.minus(ONE);
-                }
-            }
-        }
-
-        return new Extraction(removed, notRemoved, rest);
+        long extracted = extracted(packed, other.packed);
+        return new Extraction(of(extracted), of(notExtracted(packed, other.packed)), of(packed - extracted));
     }
 
     @Value
@@ -241,25 +387,19 @@ public class Mana {
     }
 
     public boolean isEmpty() {
-        return ccm() == 0;
+        return packed == 0L;
     }
 
     @Override
     public boolean equals(Object other) {
         if (this == other) return true;
         if (other == null || getClass() != other.getClass()) return false;
-        Mana mana = (Mana) other;
-        return b == mana.b &&
-                u == mana.u &&
-                g == mana.g &&
-                r == mana.r &&
-                w == mana.w &&
-                x == mana.x;
+        return packed == ((Mana) other).packed;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), b, u, g, r, w, x);
+        return Long.hashCode(packed);
     }
 
     @Override
@@ -267,12 +407,13 @@ public class Mana {
         if (isEmpty()) {
             return "0";
         }
+        int x = getX();
         return (x > 0 ? x : "") // Character.toString((char)(x+9311))
-                + Strings.repeat("B", b)
-                + Strings.repeat("U", u)
-                + Strings.repeat("G", g)
-                + Strings.repeat("R", r)
-                + Strings.repeat("W", w)
+                + Strings.repeat("B", getB())
+                + Strings.repeat("U", getU())
+                + Strings.repeat("G", getG())
+                + Strings.repeat("R", getR())
+                + Strings.repeat("W", getW())
                 + (x < 0 ? x : "");
 //        if (isEmpty()) {
 //            return "⓿";
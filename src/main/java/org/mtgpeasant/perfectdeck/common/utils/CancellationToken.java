@@ -0,0 +1,38 @@
+package org.mtgpeasant.perfectdeck.common.utils;
+
+/**
+ * Allows cancelling a running simulation
+ * <p>
+ * Cancellation is checked between chunks of iterations: a cancelled simulation stops as soon as its running chunks
+ * are completed, and returns results for the iterations it completed.
+ */
+public class CancellationToken {
+    private final CancellationToken parent;
+    private volatile boolean cancelled = false;
+
+    public CancellationToken() {
+        this(null);
+    }
+
+    private CancellationToken(CancellationToken parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Creates a token cancelled either on its own, or when this one is
+     */
+    public CancellationToken child() {
+        return new CancellationToken(this);
+    }
+
+    /**
+     * Requests cancellation
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled || parent != null && parent.isCancelled();
+    }
+}
@@ -0,0 +1,136 @@
+package org.mtgpeasant.perfectdeck.common.utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs a range of iterations on a work-stealing pool
+ * <p>
+ * The range is split into chunks; each chunk accumulates its own results that are then merged together.
+ */
+public class ParallelRange {
+    /**
+     * Runs iterations {@code [0, iterations)} and reduces their results
+     *
+     * @param executor       pool to run the iterations in (if {@code null}, a dedicated pool is created and shut down at the end)
+     * @param parallelism    number of worker threads of the dedicated pool ({@code 0} for the number of available processors)
+     * @param iterations     number of iterations
+     * @param chunkSize      maximum number of iterations run in one chunk
+     * @param listener       optional progress listener (notified after each chunk)
+     * @param cancellation   optional cancellation token (checked before each chunk)
+     * @param newAccumulator creates a new (empty) accumulator for a chunk
+     * @param iteration      runs one iteration, accumulating its result
+     * @param merger         merges two accumulators
+     * @return merged accumulator (only contains completed chunks if cancelled)
+     */
+    public static <A> A reduce(ForkJoinPool executor, int parallelism, int iterations, int chunkSize, SimulationListener listener, CancellationToken cancellation, Supplier<A> newAccumulator, ObjIntConsumer<A> iteration, BinaryOperator<A> merger) {
+        return reduce(executor, parallelism, iterations, chunkSize, listener, cancellation, newAccumulator, iteration, merger, null);
+    }
+
+    /**
+     * Runs iterations {@code [0, iterations)} and reduces their results
+     * <p>
+     * Same as {@link #reduce(ForkJoinPool, int, int, int, SimulationListener, CancellationToken, Supplier, ObjIntConsumer, BinaryOperator)},
+     * with an additional callback receiving each chunk accumulator as soon as it is completed (and before it gets
+     * merged). It is invoked concurrently from worker threads and must not modify the accumulator.
+     */
+    public static <A> A reduce(ForkJoinPool executor, int parallelism, int iterations, int chunkSize, SimulationListener listener, CancellationToken cancellation, Supplier<A> newAccumulator, ObjIntConsumer<A> iteration, BinaryOperator<A> merger, Consumer<A> chunkCompleted) {
+        ForkJoinPool pool = executor != null ? executor : newPool(parallelism);
+        try {
+            Run<A> run = new Run<>(iterations, Math.max(1, chunkSize), listener, cancellation, newAccumulator, iteration, merger, chunkCompleted);
+            return pool.invoke(new Chunk<>(run, 0, iterations));
+        } finally {
+            if (pool != executor) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Creates a new work-stealing pool
+     *
+     * @param parallelism number of worker threads ({@code 0} for the number of available processors)
+     */
+    public static ForkJoinPool newPool(int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * State shared by all chunks of a run
+     */
+    private static class Run<A> {
+        final int iterations;
+        final int chunkSize;
+        final SimulationListener listener;
+        final CancellationToken cancellation;
+        final Supplier<A> newAccumulator;
+        final ObjIntConsumer<A> iteration;
+        final BinaryOperator<A> merger;
+        final Consumer<A> chunkCompleted;
+        final long startTime = System.currentTimeMillis();
+        final AtomicLong completed = new AtomicLong();
+
+        Run(int iterations, int chunkSize, SimulationListener listener, CancellationToken cancellation, Supplier<A> newAccumulator, ObjIntConsumer<A> iteration, BinaryOperator<A> merger, Consumer<A> chunkCompleted) {
+            this.iterations = iterations;
+            this.chunkSize = chunkSize;
+            this.listener = listener;
+            this.cancellation = cancellation;
+            this.newAccumulator = newAccumulator;
+            this.iteration = iteration;
+            this.merger = merger;
+            this.chunkCompleted = chunkCompleted;
+        }
+
+        boolean isCancelled() {
+            return cancellation != null && cancellation.isCancelled();
+        }
+
+        void chunkCompleted(A accumulator, int size) {
+            if (chunkCompleted != null) {
+                chunkCompleted.accept(accumulator);
+            }
+            long done = completed.addAndGet(size);
+            if (listener != null) {
+                listener.onProgress(new SimulationListener.Progress(done, iterations, System.currentTimeMillis() - startTime));
+            }
+        }
+    }
+
+    private static class Chunk<A> extends RecursiveTask<A> {
+        final Run<A> run;
+        final int from;
+        final int to;
+
+        Chunk(Run<A> run, int from, int to) {
+            this.run = run;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from <= run.chunkSize) {
+                A accumulator = run.newAccumulator.get();
+                if (run.isCancelled()) {
+                    return accumulator;
+                }
+                for (int idx = from; idx < to; idx++) {
+                    run.iteration.accept(accumulator, idx);
+                }
+                run.chunkCompleted(accumulator, to - from);
+                return accumulator;
+            }
+            int middle = (from + to) >>> 1;
+            Chunk<A> left = new Chunk<>(run, from, middle);
+            Chunk<A> right = new Chunk<>(run, middle, to);
+            right.fork();
+            A leftResult = left.compute();
+            return run.merger.apply(leftResult, right.join());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.mtgpeasant.perfectdeck.common.utils;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Seeds management for reproducible simulations
+ * <p>
+ * Each simulated iteration gets its own random generator, derived from a master seed and the iteration index:
+ * workers never share a random generator, and any iteration can be replayed from its seed.
+ */
+public class Seeds {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Returns a new random master seed
+     */
+    public static long newSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * Derives the seed of an iteration from the master seed
+     *
+     * @param masterSeed master seed
+     * @param iteration  iteration index
+     * @return iteration seed
+     */
+    public static long seed(long masterSeed, int iteration) {
+        return mix64(masterSeed + GOLDEN_GAMMA * (iteration + 1L));
+    }
+
+    /**
+     * Creates the random generator of an iteration
+     *
+     * @param masterSeed master seed
+     * @param iteration  iteration index
+     * @return iteration random generator
+     */
+    public static SplittableRandom random(long masterSeed, int iteration) {
+        return new SplittableRandom(seed(masterSeed, iteration));
+    }
+
+    /**
+     * David Stafford's variant 13 of MurmurHash3 finalizer (same as {@link SplittableRandom})
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
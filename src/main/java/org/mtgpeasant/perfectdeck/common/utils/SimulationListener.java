@@ -0,0 +1,40 @@
+package org.mtgpeasant.perfectdeck.common.utils;
+
+import lombok.Value;
+
+/**
+ * Listens to the progress of a simulation
+ * <p>
+ * Notified each time a chunk of iterations is completed; may be invoked concurrently from worker threads.
+ */
+@FunctionalInterface
+public interface SimulationListener {
+    void onProgress(Progress progress);
+
+    @Value
+    class Progress {
+        /**
+         * Number of iterations completed so far
+         */
+        final long completed;
+        /**
+         * Total number of iterations
+         */
+        final long total;
+        /**
+         * Time elapsed since simulation start (in milliseconds)
+         */
+        final long elapsed;
+
+        /**
+         * Returns the simulation throughput (in iterations per second)
+         */
+        public double getIterationsPerSecond() {
+            return elapsed == 0 ? 0d : 1000d * (double) completed / (double) elapsed;
+        }
+
+        public String toString() {
+            return String.format("%d/%d (%.0f/s)", completed, total, getIterationsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.mtgpeasant.perfectdeck.common.utils;
+
+/**
+ * Zobrist-style hashing of game states
+ * <p>
+ * Each (feature, value) pair gets a pseudo random 64 bits key, and the hash of a state is the sum of the keys of its
+ * features: it can be updated incrementally, and doesn't depend on the order of unordered collections.
+ */
+public class Zobrist {
+    private static final long FEATURE_GAMMA = 0xc2b2ae3d27d4eb4fL;
+
+    /**
+     * Returns the key of the given feature value
+     *
+     * @param feature feature (any small number, different for each feature of a state)
+     * @param value   feature value
+     */
+    public static long key(int feature, long value) {
+        return Seeds.mix64(Seeds.mix64(value) + FEATURE_GAMMA * (feature + 1L));
+    }
+}
@@ -137,6 +137,45 @@ public abstract class DeckPilot<T extends Game> implements Cloneable {
         return null;
     }
 
+    /**
+     * Resets the pilot for a new game, played with the same (reset) game instance
+     * <p>
+     * Default implementation returns {@code false}: the pilot is not reusable and a new one is instantiated for each
+     * game
+     * <p>
+     * Override to have your pilot reused: reset all per-game fields and return {@code true}
+     *
+     * @return {@code true} if the pilot has been reset and can be reused
+     */
+    public boolean reset() {
+        return false;
+    }
+
+    /**
+     * Captures the pilot own state (anything but the game), to be restored after a future-exploration in place
+     * <p>
+     * Default implementation returns {@code null} (stateless pilot)
+     * <p>
+     * Override if your pilot has fields that change during the game
+     *
+     * @return pilot state
+     * @see Game#checkpoint()
+     */
+    public Object saveState() {
+        return null;
+    }
+
+    /**
+     * Restores the pilot own state, as captured by {@link #saveState()}
+     * <p>
+     * Default implementation does nothing
+     *
+     * @param state pilot state
+     */
+    public void restoreState(Object state) {
+
+    }
+
     /**
      * Forks the pilot to perform brute-force future-exploration
      */
@@ -144,7 +183,7 @@ public abstract class DeckPilot<T extends Game> implements Cloneable {
         try {
             DeckPilot<T> pilot = (DeckPilot<T>) super.clone();
             pilot.game = (T) game.fork();
-            if (game.listeners.contains(this)) {
+            if (this instanceof GameListener && game.hasListener((GameListener) this)) {
                 pilot.game.addListener((GameListener) pilot);
             }
             return pilot;
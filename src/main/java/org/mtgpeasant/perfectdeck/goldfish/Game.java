@@ -1,19 +1,23 @@
 package org.mtgpeasant.perfectdeck.goldfish;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.ToString;
 import org.mtgpeasant.perfectdeck.common.cards.Cards;
+import org.mtgpeasant.perfectdeck.common.cards.Library;
 import org.mtgpeasant.perfectdeck.common.mana.Mana;
+import org.mtgpeasant.perfectdeck.common.utils.Zobrist;
 import org.mtgpeasant.perfectdeck.goldfish.event.GameEvent;
 import org.mtgpeasant.perfectdeck.goldfish.event.GameListener;
 
 import java.io.PrintWriter;
 import java.util.*;
+import java.util.random.RandomGenerator;
 
 import static org.mtgpeasant.perfectdeck.goldfish.Permanent.*;
 
 @Getter
-@ToString(exclude = "library")
+@ToString(exclude = {"library", "pool", "journal", "listeners", "listenerSubscriptions", "subscriptions", "movedEvent", "cardEvent", "spellEvent", "dispatching", "version", "zonesVersion", "capabilityRules", "capability", "capabilityVersion"})
 public class Game implements Cloneable {
 
     public enum Phase {
@@ -37,7 +41,7 @@ public class Game implements Cloneable {
     public enum CardType {artifact, creature, enchantment, instant, land, planeswalker, sorcery, token}
 
     // game state
-    protected final boolean onThePlay;
+    protected boolean onThePlay;
     private boolean isFork = false;
     protected PrintWriter logs;
     protected int mulligans = 0;
@@ -50,49 +54,270 @@ public class Game implements Cloneable {
 
     protected Permanents battlefield = new Permanents();
     protected Permanents exile = new Permanents();
-    protected Cards graveyard = Cards.empty();
+    protected Cards graveyard = Cards.indexed();
 
     // turn and phase state
     protected Phase currentPhase;
     protected boolean landed = false;
-    protected Mana pool = Mana.zero();
+    // mana pool, packed (see Mana)
+    @Getter(AccessLevel.NONE)
+    protected long pool = 0L;
     private int damageDealtThisTurn = 0;
 
-    // listeners
-    protected Set<GameListener> listeners = new HashSet<>();
+    // listeners, with their subscriptions (see subscription())
+    private static final GameListener[] NO_LISTENERS = new GameListener[0];
+    @Getter(AccessLevel.NONE)
+    private GameListener[] listeners = NO_LISTENERS;
+    @Getter(AccessLevel.NONE)
+    private long[] listenerSubscriptions = new long[0];
+    @Getter(AccessLevel.NONE)
+    private long subscriptions = 0L;
+    // reused events (see trigger()), and number of events being dispatched
+    @Getter(AccessLevel.NONE)
+    private GameEvent.CardMovedEvent movedEvent = new GameEvent.CardMovedEvent(null, null, null);
+    @Getter(AccessLevel.NONE)
+    private GameEvent.CardEvent cardEvent = new GameEvent.CardEvent(null, null);
+    @Getter(AccessLevel.NONE)
+    private GameEvent.SpellEvent spellEvent = new GameEvent.SpellEvent(null, null, null, null);
+    @Getter(AccessLevel.NONE)
+    private int dispatching = 0;
+
+    // random generator (used to shuffle)
+    protected RandomGenerator random;
+
+    // state version (see getVersion())
+    @Getter(AccessLevel.NONE)
+    private long version = 0L;
+    @Getter(AccessLevel.NONE)
+    private long zonesVersion = 0L;
+
+    // mana capability cache (see getManaCapability())
+    @Getter(AccessLevel.NONE)
+    private ManaCapability.Rules capabilityRules;
+    @Getter(AccessLevel.NONE)
+    private ManaCapability capability;
+    @Getter(AccessLevel.NONE)
+    private long capabilityVersion;
+
+    // undo log (used to explore the future in place)
+    @Getter(AccessLevel.NONE)
+    private Journal journal = new Journal();
 
 
     protected Game(boolean onThePlay, PrintWriter logs) {
         this.onThePlay = onThePlay;
         this.logs = logs;
+        battlefield.journal = journal;
+        exile.journal = journal;
     }
 
     /**
      * Forks the game state to perform brute-force future-exploration
+     * <p>
+     * The fork is independent from this game: cards zones are copied on write (on either side), and permanents are
+     * copied. The fork draws the same cards as this game would (see {@link Library}).
+     * <p>
+     * To explore many futures of a same game, prefer {@link #checkpoint()}: it changes and restores the game in place.
      */
     public Game fork() throws CloneNotSupportedException {
         Game game = (Game) super.clone();
         game.logs = null;
-        // make library unmodifiable
-        game.library = Cards.of(Collections.unmodifiableCollection(game.library));
+        game.library = library.clone();
         game.isFork = true;
         game.hand = hand.clone();
         game.battlefield = battlefield.clone();
         game.exile = exile.clone();
         game.graveyard = graveyard.clone();
         // unset listeners
-        game.listeners = new HashSet<>();
+        game.listeners = NO_LISTENERS;
+        game.listenerSubscriptions = new long[0];
+        game.subscriptions = 0L;
+        game.movedEvent = new GameEvent.CardMovedEvent(null, null, null);
+        game.cardEvent = new GameEvent.CardEvent(null, null);
+        game.spellEvent = new GameEvent.SpellEvent(null, null, null, null);
+        game.dispatching = 0;
+        game.journal = new Journal();
+        game.battlefield.journal = game.journal;
+        game.exile.journal = game.journal;
         return game;
     }
 
+    /**
+     * Opens a checkpoint to explore the future in place, as a cheaper alternative to {@link #fork()}
+     * <p>
+     * All changes made to the game state until the matching {@link #rollback(int)} are undone by it: permanents
+     * changes are journaled one by one, other state is restored at once (cards zones from copy-on-write snapshots).
+     * Checkpoints can be nested.
+     *
+     * @return checkpoint mark, to be passed to {@link #rollback(int)}
+     */
+    public int checkpoint() {
+        int mark = journal.checkpoint();
+        int mulligans = this.mulligans;
+        int currentTurn = this.currentTurn;
+        int opponentLife = this.opponentLife;
+        int opponentPoisonCounters = this.opponentPoisonCounters;
+        Cards library = this.library == null ? null : this.library.clone();
+        Cards hand = this.hand == null ? null : this.hand.clone();
+        Cards graveyard = this.graveyard.clone();
+        Phase currentPhase = this.currentPhase;
+        boolean landed = this.landed;
+        long pool = this.pool;
+        int damageDealtThisTurn = this.damageDealtThisTurn;
+        journal.record(() -> {
+            this.mulligans = mulligans;
+            this.currentTurn = currentTurn;
+            this.opponentLife = opponentLife;
+            this.opponentPoisonCounters = opponentPoisonCounters;
+            this.library = library;
+            this.hand = hand;
+            this.graveyard = graveyard;
+            this.currentPhase = currentPhase;
+            this.landed = landed;
+            this.pool = pool;
+            this.damageDealtThisTurn = damageDealtThisTurn;
+        });
+        return mark;
+    }
+
+    /**
+     * Undoes all changes made since the given checkpoint, and closes it
+     *
+     * @param mark checkpoint mark, as returned by {@link #checkpoint()}
+     */
+    public void rollback(int mark) {
+        journal.rollback(mark);
+        changed();
+    }
+
+    /**
+     * Returns the version of the game state: it changes whenever the game state changes (zones, permanents, mana pool,
+     * life, ...)
+     * <p>
+     * Used to cache computations that only depend on the game state. Subclasses that change the state without calling
+     * game methods must call {@link #changed()}.
+     */
+    public long getVersion() {
+        long zones = battlefield.getVersion() + exile.getVersion() + graveyard.getVersion()
+                + (hand == null ? 0 : hand.getVersion())
+                + (library == null ? 0 : library.getVersion());
+        if (zones != zonesVersion) {
+            zonesVersion = zones;
+            version++;
+        }
+        return version;
+    }
+
+    /**
+     * Returns a hash of the game state (see {@link Zobrist}): two games in the same state have the same hash, whatever
+     * the actions that led to it
+     * <p>
+     * Covers zones contents (the library by its size only), permanents state, mana pool, opponent life and poison
+     * counters, turn, phase, land drop and damage dealt this turn. Zones hashes are cached until they change.
+     * Subclasses with additional state should include it.
+     */
+    public long getStateHash() {
+        return Zobrist.key(0, battlefield.contentHash())
+                + Zobrist.key(1, exile.contentHash())
+                + Zobrist.key(2, graveyard.contentHash())
+                + Zobrist.key(3, hand == null ? 0 : hand.contentHash())
+                + Zobrist.key(4, library == null ? 0 : library.size())
+                + Zobrist.key(5, pool)
+                + Zobrist.key(6, ((long) opponentLife << 32) | opponentPoisonCounters)
+                + Zobrist.key(7, ((long) currentTurn << 32) | (currentPhase == null ? 0 : currentPhase.ordinal() + 1))
+                + Zobrist.key(8, ((long) damageDealtThisTurn << 1) | (landed ? 1 : 0));
+    }
+
+    /**
+     * Returns an upper bound of the mana that can be produced with the given producers
+     * <p>
+     * Cached as long as the game state doesn't change (see {@link #getVersion()}).
+     *
+     * @param rules mana producers
+     */
+    public ManaCapability getManaCapability(ManaCapability.Rules rules) {
+        long current = getVersion();
+        if (rules != capabilityRules || current != capabilityVersion || capability == null) {
+            capability = rules.compute(this);
+            capabilityRules = rules;
+            capabilityVersion = current;
+        }
+        return capability;
+    }
+
+    /**
+     * Notifies a change of the game state (other than in zones, that are tracked by themselves)
+     */
+    protected void changed() {
+        version++;
+    }
+
+    /**
+     * Resets this game to its initial state, for a new game to be played with the same instance
+     * <p>
+     * Zones are emptied but their containers are reused. Listeners are removed.
+     * <p>
+     * Override if your game has additional state (and call super)
+     *
+     * @param onThePlay whether the player starts
+     * @param logs      logs writer (may be {@code null})
+     */
+    protected void reset(boolean onThePlay, PrintWriter logs) {
+        journal.clear();
+        changed();
+        this.onThePlay = onThePlay;
+        this.logs = logs;
+        isFork = false;
+        mulligans = 0;
+        currentTurn = 0;
+        opponentLife = 20;
+        opponentPoisonCounters = 0;
+        library = null;
+        if (hand != null) {
+            hand.clear();
+        }
+        battlefield.clear();
+        exile.clear();
+        graveyard.clear();
+        currentPhase = null;
+        landed = false;
+        pool = 0L;
+        damageDealtThisTurn = 0;
+        listeners = NO_LISTENERS;
+        listenerSubscriptions = new long[0];
+        subscriptions = 0L;
+        random = null;
+    }
+
+    /**
+     * Sets the random generator used by this game
+     * <p>
+     * When unset, a thread-local random generator is used
+     */
+    protected void setRandom(RandomGenerator random) {
+        this.random = random;
+    }
+
     protected void keepHandAndStart(Cards library, Cards hand) {
+        changed();
         this.library = library;
-        this.hand = hand;
-        log("hand #" + mulligans + " " + hand + " kept");
+        if (this.hand == null) {
+            this.hand = hand.toIndexed();
+        } else {
+            // reset game: reuse hand
+            this.hand.clear();
+            this.hand.addAll(hand);
+        }
+        if (isLogging()) {
+            log("hand #" + mulligans + " " + hand + " kept");
+        }
     }
 
     protected void rejectHand(Cards hand) {
-        log("hand #" + mulligans + " " + hand + " rejected: take mulligan");
+        if (isLogging()) {
+            log("hand #" + mulligans + " " + hand + " rejected: take mulligan");
+        }
+        changed();
         mulligans++;
     }
 
@@ -120,6 +345,7 @@ public class Game implements Cloneable {
     }
 
     protected void startNextTurn() {
+        changed();
         currentTurn++;
         landed = false;
         _emptyPool();
@@ -129,42 +355,49 @@ public class Game implements Cloneable {
 
         // log
         currentPhase = null;
-        log("=== Turn " + currentTurn + " ===");
-        log("> opponent life: " + opponentLife);
-        if (opponentPoisonCounters > 0) {
-            log("> opponent poison counters: " + opponentPoisonCounters);
-        }
-        log("> hand: " + hand);
-        log("> battlefield: " + battlefield);
-        if (!graveyard.isEmpty()) {
-            log("> graveyard: " + graveyard);
-        }
-        if (!exile.isEmpty()) {
-            log("> exile: " + exile);
+        if (isLogging()) {
+            log("=== Turn " + currentTurn + " ===");
+            log("> opponent life: " + opponentLife);
+            if (opponentPoisonCounters > 0) {
+                log("> opponent poison counters: " + opponentPoisonCounters);
+            }
+            log("> hand: " + hand);
+            log("> battlefield: " + battlefield);
+            if (!graveyard.isEmpty()) {
+                log("> graveyard: " + graveyard);
+            }
+            if (!exile.isEmpty()) {
+                log("> exile: " + exile);
+            }
         }
     }
 
     protected void startPhase(Phase phase) {
+        changed();
         _emptyPool();
         currentPhase = phase;
     }
 
     protected void _emptyPool() {
-        pool = Mana.zero();
+        changed();
+        pool = 0L;
     }
 
     protected void _pay(Mana cost) {
         if (!canPay(cost)) {
-            throw new IllegalActionException("Can't pay " + cost + ": not enough mana in pool (" + pool + ")");
+            throw new IllegalActionException("Can't pay " + cost + ": not enough mana in pool (" + getPool() + ")");
         }
-        pool = pool.minus(cost);
+        changed();
+        pool = Mana.minus(pool, cost.getPacked());
     }
 
     protected void _add(Mana mana) {
-        pool = pool.plus(mana);
+        changed();
+        pool = Mana.plus(pool, mana.getPacked());
     }
 
     protected void _damageOpponent(int damage) {
+        changed();
         opponentLife -= damage;
         damageDealtThisTurn += damage;
     }
@@ -175,13 +408,12 @@ public class Game implements Cloneable {
         String cardName = permanentOrCardName instanceof String ? (String) permanentOrCardName : ((Permanent) permanentOrCardName).getCard();
         if (fromArea instanceof Cards) {
             Cards cards = (Cards) fromArea;
-            if (!cards.contains(cardName)) {
+            if (!cards.remove(cardName)) {
                 throw new IllegalActionException("Can't move [" + cardName + "]: not in " + from);
             }
-            cards.remove(cardName);
         } else {
             List<Permanent> permanents = (List<Permanent>) fromArea;
-            Optional<Permanent> card = permanentOrCardName instanceof String ? permanents.stream().filter(withName(cardName)).findFirst() : Optional.of((Permanent) permanentOrCardName);
+            Optional<Permanent> card = permanentOrCardName instanceof String ? ((Permanents) fromArea).findFirst(withName(cardName)) : Optional.of((Permanent) permanentOrCardName);
             if (!card.isPresent()) {
                 throw new IllegalActionException("Can't move [" + cardName + "]: not in " + from);
             }
@@ -191,7 +423,9 @@ public class Game implements Cloneable {
         // special: a token can't be moved
         if (permanentOrCardName instanceof Permanent && ((Permanent) permanentOrCardName).hasType(CardType.token)) {
             // trigger event
-            trigger(new GameEvent.CardMovedEvent(GameEvent.Type.leave, from, permanentOrCardName));
+            if (isSubscribed(GameEvent.Type.leave, from)) {
+                trigger(movedEvent(GameEvent.Type.leave, from, permanentOrCardName));
+            }
             return null;
         } else {
             // add to
@@ -218,25 +452,125 @@ public class Game implements Cloneable {
                 }
             }
             // trigger events
-            trigger(new GameEvent.CardMovedEvent(GameEvent.Type.leave, from, permanentOrCardName));
-            trigger(new GameEvent.CardMovedEvent(GameEvent.Type.enter, to, moved == null ? cardName : moved));
+            if (isSubscribed(GameEvent.Type.leave, from)) {
+                trigger(movedEvent(GameEvent.Type.leave, from, permanentOrCardName));
+            }
+            if (isSubscribed(GameEvent.Type.enter, to)) {
+                trigger(movedEvent(GameEvent.Type.enter, to, moved == null ? cardName : moved));
+            }
             return moved;
         }
     }
 
     /**
      * Triggers a game event
+     * <p>
+     * The event is only dispatched to the listeners that subscribed to it.
      */
     public void trigger(GameEvent event) {
-        listeners.forEach(listener -> listener.onEvent(event));
+        long bit = subscription(event.getType(), event instanceof GameEvent.CardMovedEvent ? ((GameEvent.CardMovedEvent) event).getArea() : null);
+        if ((subscriptions & bit) == 0) {
+            return;
+        }
+        GameListener[] listeners = this.listeners;
+        long[] listenerSubscriptions = this.listenerSubscriptions;
+        dispatching++;
+        try {
+            for (int i = 0; i < listeners.length; i++) {
+                if ((listenerSubscriptions[i] & bit) != 0) {
+                    listeners[i].onEvent(event);
+                }
+            }
+        } finally {
+            dispatching--;
+        }
+    }
+
+    // the game's own events are reused, unless triggered by a listener while another one is being dispatched
+    private GameEvent.CardMovedEvent movedEvent(GameEvent.Type type, Area area, Object permanentOrCard) {
+        return dispatching > 0 ? new GameEvent.CardMovedEvent(type, area, permanentOrCard) : movedEvent.reuse(type, area, permanentOrCard);
+    }
+
+    private GameEvent.CardEvent cardEvent(GameEvent.Type type, Object permanentOrCard) {
+        return dispatching > 0 ? new GameEvent.CardEvent(type, permanentOrCard) : cardEvent.reuse(type, permanentOrCard);
+    }
+
+    private GameEvent.SpellEvent spellEvent(GameEvent.Type type, String card, Mana cost, Set<CardType> types) {
+        return dispatching > 0 ? new GameEvent.SpellEvent(type, card, cost, types) : spellEvent.reuse(type, card, cost, types);
+    }
+
+    /**
+     * Determines whether some listener subscribed to the given event type (and area)
+     * <p>
+     * Use it to avoid building events that would be dropped anyway
+     *
+     * @param type event type
+     * @param area area (for card moved events), or {@code null}
+     */
+    public boolean isSubscribed(GameEvent.Type type, Area area) {
+        return (subscriptions & subscription(type, area)) != 0;
+    }
+
+    /**
+     * Returns the subscription bit of the given event type and area (one byte per type, one bit per area, the last
+     * bit for events without area)
+     */
+    private static long subscription(GameEvent.Type type, Area area) {
+        return 1L << (type.ordinal() * 8 + (area == null ? 7 : area.ordinal()));
+    }
+
+    private static long subscriptions(GameListener listener) {
+        long subscriptions = 0L;
+        for (GameEvent.Type type : listener.getEventTypes()) {
+            subscriptions |= subscription(type, null);
+            for (Area area : listener.getEventAreas()) {
+                subscriptions |= subscription(type, area);
+            }
+        }
+        return subscriptions;
     }
 
     public void addListener(GameListener listener) {
-        listeners.add(listener);
+        if (hasListener(listener)) {
+            return;
+        }
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listenerSubscriptions = Arrays.copyOf(listenerSubscriptions, listeners.length);
+        listeners[listeners.length - 1] = listener;
+        listenerSubscriptions[listeners.length - 1] = subscriptions(listener);
+        subscriptions |= listenerSubscriptions[listeners.length - 1];
     }
 
     public void removeListener(GameListener listener) {
-        listeners.remove(listener);
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i].equals(listener)) {
+                GameListener[] remainingListeners = new GameListener[listeners.length - 1];
+                long[] remainingSubscriptions = new long[listeners.length - 1];
+                System.arraycopy(listeners, 0, remainingListeners, 0, i);
+                System.arraycopy(listeners, i + 1, remainingListeners, i, listeners.length - i - 1);
+                System.arraycopy(listenerSubscriptions, 0, remainingSubscriptions, 0, i);
+                System.arraycopy(listenerSubscriptions, i + 1, remainingSubscriptions, i, listeners.length - i - 1);
+                listeners = remainingListeners;
+                listenerSubscriptions = remainingSubscriptions;
+                subscriptions = 0L;
+                for (long listenerSubscription : remainingSubscriptions) {
+                    subscriptions |= listenerSubscription;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Determines whether the given listener has been added to this game
+     */
+    public boolean hasListener(GameListener listener) {
+        for (GameListener added : listeners) {
+            if (added.equals(listener)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -245,7 +579,9 @@ public class Game implements Cloneable {
      * @param cost mana cost
      */
     public void pay(Mana cost) {
-        log("pay " + cost);
+        if (isLogging()) {
+            log("pay " + cost);
+        }
         _pay(cost);
     }
 
@@ -256,7 +592,16 @@ public class Game implements Cloneable {
      */
     public void add(Mana mana) {
         _add(mana);
-        log("add " + mana + " to mana pool (" + pool + ")");
+        if (isLogging()) {
+            log("add " + mana + " to mana pool (" + getPool() + ")");
+        }
+    }
+
+    /**
+     * Returns the mana pool
+     */
+    public Mana getPool() {
+        return Mana.of(pool);
     }
 
     /**
@@ -265,7 +610,7 @@ public class Game implements Cloneable {
      * @param cost mana cost
      */
     public boolean canPay(Mana cost) {
-        return pool.contains(cost);
+        return Mana.contains(pool, cost.getPacked());
     }
 
     /**
@@ -274,7 +619,9 @@ public class Game implements Cloneable {
      * @param permanent card
      */
     public void tap(Permanent permanent) {
-        log("tap [" + permanent + "]");
+        if (isLogging()) {
+            log("tap [" + permanent + "]");
+        }
         if (permanent.isTapped()) {
             throw new IllegalActionException("Can't tap [" + permanent + "]: already tapped");
         }
@@ -288,7 +635,9 @@ public class Game implements Cloneable {
      * @param mana      produced mana
      */
     public void tapLandForMana(Permanent permanent, Mana mana) {
-        log("tap [" + permanent + "] and add " + mana + " to mana pool");
+        if (isLogging()) {
+            log("tap [" + permanent + "] and add " + mana + " to mana pool");
+        }
         if (permanent.isTapped()) {
             throw new IllegalActionException("Can't tap [" + permanent + "]: already tapped");
         }
@@ -303,7 +652,9 @@ public class Game implements Cloneable {
      * @param strength  creature strength
      */
     public void tapForAttack(Permanent permanent, int strength) {
-        log("attack with [" + permanent + "] for " + strength + " (" + (opponentLife - strength) + ")");
+        if (isLogging()) {
+            log("attack with [" + permanent + "] for " + strength + " (" + (opponentLife - strength) + ")");
+        }
         if (permanent.isTapped()) {
             throw new IllegalActionException("Can't tap [" + permanent + "]: already tapped");
         }
@@ -326,7 +677,7 @@ public class Game implements Cloneable {
      */
     public void untapAll() {
         log("untap all");
-        battlefield.stream().filter(tapped()).forEach(card -> card.setTapped(false));
+        battlefield.find(tapped()).forEach(card -> card.setTapped(false));
     }
 
     /**
@@ -335,7 +686,9 @@ public class Game implements Cloneable {
      * @param cardName land card name
      */
     public Permanent land(String cardName) {
-        log("land [" + cardName + "]");
+        if (isLogging()) {
+            log("land [" + cardName + "]");
+        }
         if (landed) {
             throw new IllegalActionException("Can't land [" + cardName + "]: can't land twice the same turn");
         }
@@ -343,6 +696,7 @@ public class Game implements Cloneable {
 //        hand.remove(cardName);
 //        Permanent permanent = permanent(cardName, CardType.land);
 //        battlefield.add(permanent);
+        changed();
         landed = true;
         return land;
     }
@@ -353,7 +707,9 @@ public class Game implements Cloneable {
      * @param name the token card name
      */
     public Permanent createToken(String name, CardType... types) {
-        log("create token [" + name + "]");
+        if (isLogging()) {
+            log("create token [" + name + "]");
+        }
         CardType[] types2 = new CardType[types.length + 1];
         types2[0] = CardType.token;
         System.arraycopy(types, 0, types2, 1, types.length);
@@ -364,7 +720,9 @@ public class Game implements Cloneable {
             token.setSickness(true);
         }
         // trigger event
-        trigger(new GameEvent.CardMovedEvent(GameEvent.Type.enter, Area.battlefield, token));
+        if (isSubscribed(GameEvent.Type.enter, Area.battlefield)) {
+            trigger(movedEvent(GameEvent.Type.enter, Area.battlefield, token));
+        }
         return token;
     }
 
@@ -374,7 +732,9 @@ public class Game implements Cloneable {
      * @param damage damage amount
      */
     public void damageOpponent(int damage, String reason) {
-        log("damage" + (reason == null ? "" : " (" + reason + ")") + ": " + damage + " (" + (opponentLife - damage) + ")");
+        if (isLogging()) {
+            log("damage" + (reason == null ? "" : " (" + reason + ")") + ": " + damage + " (" + (opponentLife - damage) + ")");
+        }
         _damageOpponent(damage);
     }
 
@@ -393,8 +753,11 @@ public class Game implements Cloneable {
      * @param counters number of poison counters
      */
     public void poisonOpponent(int counters) {
+        changed();
         opponentPoisonCounters += counters;
-        log("poison: " + counters + " (total: " + opponentPoisonCounters + ")");
+        if (isLogging()) {
+            log("poison: " + counters + " (total: " + opponentPoisonCounters + ")");
+        }
     }
 
     /**
@@ -402,7 +765,8 @@ public class Game implements Cloneable {
      */
     public void shuffleLibrary() {
         log("shuffle library");
-        library = library.shuffle();
+        changed();
+        library = random == null ? library.shuffle() : library.shuffle(random);
     }
 
     /**
@@ -416,7 +780,9 @@ public class Game implements Cloneable {
             return Cards.empty();
         }
         Cards drawn = library.draw(cards);
-        log("draw " + cards + ": " + drawn);
+        if (isLogging()) {
+            log("draw " + cards + ": " + drawn);
+        }
         hand.addAll(drawn);
         return drawn;
     }
@@ -431,7 +797,9 @@ public class Game implements Cloneable {
      * @param types    card type(s)
      */
     public Permanent move(String cardName, Area from, Area to, Side side, CardType... types) {
-        log("move [" + cardName + "] from " + from + " to " + (side == Side.top ? "" : "bottom of ") + to);
+        if (isLogging()) {
+            log("move [" + cardName + "] from " + from + " to " + (side == Side.top ? "" : "bottom of ") + to);
+        }
         return _move(cardName, from, to, side, types);
     }
 
@@ -457,10 +825,16 @@ public class Game implements Cloneable {
      * @param types    card type(s)
      */
     public Permanent cast(String cardName, Area from, Area to, Mana cost, CardType... types) {
-        log("cast [" + cardName + "]" + (from == Area.hand ? "" : " from " + from) + (to == Area.graveyard ? "" : " to " + to) + " for " + cost);
+        if (isLogging()) {
+            log("cast [" + cardName + "]" + (from == Area.hand ? "" : " from " + from) + (to == Area.graveyard ? "" : " to " + to) + " for " + cost);
+        }
         _pay(cost);
         // trigger event
-        trigger(new GameEvent.SpellEvent(GameEvent.Type.cast, cardName, cost, new HashSet<>(Arrays.asList(types))));
+        if (isSubscribed(GameEvent.Type.cast, null)) {
+            Set<CardType> spellTypes = EnumSet.noneOf(CardType.class);
+            Collections.addAll(spellTypes, types);
+            trigger(spellEvent(GameEvent.Type.cast, cardName, cost, spellTypes));
+        }
         return _move(cardName, from, to, Side.top, types);
     }
 
@@ -552,10 +926,14 @@ public class Game implements Cloneable {
      * @param cardName card name
      */
     public void discard(String cardName) {
-        log("discard [" + cardName + "]");
+        if (isLogging()) {
+            log("discard [" + cardName + "]");
+        }
         _move(cardName, Area.hand, Area.graveyard, Side.top);
         // trigger event
-        trigger(new GameEvent.CardEvent(GameEvent.Type.discard, cardName));
+        if (isSubscribed(GameEvent.Type.discard, null)) {
+            trigger(cardEvent(GameEvent.Type.discard, cardName));
+        }
     }
 
     /**
@@ -576,9 +954,13 @@ public class Game implements Cloneable {
      * @param permanent permanent card
      */
     public void sacrifice(Permanent permanent) {
-        log("sacrifice [" + permanent + "]");
+        if (isLogging()) {
+            log("sacrifice [" + permanent + "]");
+        }
         // trigger event
-        trigger(new GameEvent.CardEvent(GameEvent.Type.sacrifice, permanent));
+        if (isSubscribed(GameEvent.Type.sacrifice, null)) {
+            trigger(cardEvent(GameEvent.Type.sacrifice, permanent));
+        }
         _move(permanent, Area.battlefield, Area.graveyard, Side.top);
     }
 
@@ -588,9 +970,13 @@ public class Game implements Cloneable {
      * @param permanent permanent name
      */
     public void destroy(Permanent permanent) {
-        log("destroy [" + permanent + "]");
+        if (isLogging()) {
+            log("destroy [" + permanent + "]");
+        }
         // trigger event
-        trigger(new GameEvent.CardEvent(GameEvent.Type.destroy, permanent));
+        if (isSubscribed(GameEvent.Type.destroy, null)) {
+            trigger(cardEvent(GameEvent.Type.destroy, permanent));
+        }
         _move(permanent, Area.battlefield, Area.graveyard, Side.top);
     }
 
@@ -615,6 +1001,15 @@ public class Game implements Cloneable {
         return selected;
     }
 
+    /**
+     * Determines whether this game is logging
+     * <p>
+     * Use it to avoid building costly log messages that would be dropped anyway
+     */
+    public boolean isLogging() {
+        return logs != null;
+    }
+
     public void log(String message) {
         if (logs != null) {
             if (currentPhase != null) {
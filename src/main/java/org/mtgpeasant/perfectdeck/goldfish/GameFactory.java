@@ -0,0 +1,86 @@
+package org.mtgpeasant.perfectdeck.goldfish;
+
+import java.io.PrintWriter;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+/**
+ * Creates new {@link Game} instances
+ * <p>
+ * Factories are resolved once per simulation and then invoked for every simulated game.
+ */
+@FunctionalInterface
+public interface GameFactory {
+    /**
+     * Instantiates a new game
+     *
+     * @param onThePlay whether the player starts
+     * @param logs      logs writer (may be {@code null})
+     * @return new game
+     */
+    Game create(boolean onThePlay, PrintWriter logs);
+
+    /**
+     * Returns a factory creating games of the type declared by the given pilot class
+     *
+     * @param pilotClass deck pilot class
+     */
+    static GameFactory forPilot(Class<? extends DeckPilot> pilotClass) {
+        return of(gameClass(pilotClass));
+    }
+
+    /**
+     * Returns a factory creating games of the given type
+     * <p>
+     * The game class must declare a {@code (boolean, PrintWriter)} constructor. It is bound with
+     * {@link LambdaMetafactory}, so that creating a game is a direct constructor call, as a {@code new} expression.
+     *
+     * @param gameClass game class
+     * @throws IllegalArgumentException if the game class doesn't declare the expected constructor
+     */
+    static GameFactory of(Class<? extends Game> gameClass) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(gameClass, MethodHandles.lookup());
+            MethodHandle constructor = lookup.findConstructor(gameClass, MethodType.methodType(void.class, Boolean.TYPE, PrintWriter.class));
+            return (GameFactory) LambdaMetafactory.metafactory(
+                    lookup,
+                    "create",
+                    MethodType.methodType(GameFactory.class),
+                    MethodType.methodType(Game.class, Boolean.TYPE, PrintWriter.class),
+                    constructor,
+                    constructor.type()
+            ).getTarget().invokeExact();
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalArgumentException("Couldn't instantiate game of type " + gameClass.getSimpleName(), t);
+        }
+    }
+
+    /**
+     * Determines the game type a deck pilot class works with
+     *
+     * @param pilotClass deck pilot class
+     * @return game class (the {@code T} type parameter of {@link DeckPilot})
+     */
+    static Class<? extends Game> gameClass(Class<? extends DeckPilot> pilotClass) {
+        Class<?> clazz = pilotClass;
+        while (clazz != null && clazz.getSuperclass() != DeckPilot.class) {
+            clazz = clazz.getSuperclass();
+        }
+        if (clazz != null) {
+            Type superclass = clazz.getGenericSuperclass();
+            if (superclass instanceof ParameterizedType) {
+                Type gameType = ((ParameterizedType) superclass).getActualTypeArguments()[0];
+                if (gameType instanceof Class) {
+                    return (Class<? extends Game>) gameType;
+                }
+            }
+        }
+        return Game.class;
+    }
+}
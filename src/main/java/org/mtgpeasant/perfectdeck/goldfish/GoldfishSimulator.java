@@ -1,23 +1,35 @@
 package org.mtgpeasant.perfectdeck.goldfish;
 
+import com.google.common.base.Preconditions;
 import com.google.common.base.Predicates;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Value;
 import org.mtgpeasant.perfectdeck.common.cards.Cards;
 import org.mtgpeasant.perfectdeck.common.cards.Deck;
+import org.mtgpeasant.perfectdeck.common.cards.Library;
+import org.mtgpeasant.perfectdeck.common.utils.CancellationToken;
+import org.mtgpeasant.perfectdeck.common.utils.ParallelRange;
+import org.mtgpeasant.perfectdeck.common.utils.Seeds;
+import org.mtgpeasant.perfectdeck.common.utils.SimulationListener;
 import org.mtgpeasant.perfectdeck.goldfish.event.GameListener;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.function.Function;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
 
 
@@ -36,9 +48,58 @@ public class GoldfishSimulator {
     final int maxTurns = 20;
     @Builder.Default
     final PrintWriter out = null;
+    /**
+     * Number of worker threads ({@code 0} for the number of available processors)
+     * <p>
+     * Ignored when an {@link #executor} is provided
+     */
+    @Builder.Default
+    final int parallelism = 0;
+    /**
+     * Number of games simulated in one chunk by a worker thread
+     */
+    @Builder.Default
+    final int chunkSize = 500;
+    /**
+     * Optional pool to run the simulation in (a dedicated pool is created for each simulation otherwise)
+     */
+    @Builder.Default
+    final ForkJoinPool executor = null;
+    /**
+     * Master seed of the simulation (a random one is chosen if unset)
+     * <p>
+     * Simulating with the same seed produces the very same games
+     */
+    @Builder.Default
+    final Long seed = null;
+    /**
+     * Optional progress listener
+     */
+    @Builder.Default
+    final SimulationListener listener = null;
+    /**
+     * Optional cancellation token: a cancelled simulation returns results for the games it completed
+     */
+    @Builder.Default
+    final CancellationToken cancellation = null;
+    /**
+     * Minimum interval between two stats snapshots (in milliseconds)
+     */
+    @Builder.Default
+    final long snapshotInterval = 500;
 
     final Class<? extends DeckPilot> pilotClass;
 
+    /**
+     * Optional game factory (defaults to the game type declared by {@link #pilotClass})
+     */
+    final GameFactory gameFactory;
+
+    /**
+     * Optional pilot factory (defaults to {@link #pilotClass} constructor)
+     */
+    final PilotFactory pilotFactory;
+
     /**
      * TODO:
      * stats on mulligans & OTP + kill turn breakdown
@@ -48,7 +109,14 @@ public class GoldfishSimulator {
     public static class DeckStats {
         final Deck deck;
         final List<GameResult> results;
+        /**
+         * Number of simulated games (lower than requested if the simulation was cancelled)
+         */
         final int iterations;
+        /**
+         * Master seed used to simulate
+         */
+        final long seed;
 
         public static Predicate<GameResult> withStart(Start start) {
             return result -> result.getStart() == start;
@@ -189,30 +257,220 @@ public class GoldfishSimulator {
     }
 
 
+    /**
+     * Simulates several versions of a deck
+     * <p>
+     * All versions are simulated with the same master seed
+     *
+     * @param decksProvider provides the different versions of the deck
+     * @return statistics (one per deck)
+     */
     public List<DeckStats> simulate(Iterable<Deck> decksProvider) {
+        long masterSeed = seed != null ? seed : Seeds.newSeed();
         return StreamSupport.stream(decksProvider.spliterator(), false)
-                .map(deck -> simulate(deck))
+                .map(deck -> simulate(deck, masterSeed, null))
                 .collect(Collectors.toList());
     }
 
     public DeckStats simulate(Deck deck) {
-        List<GameResult> results = IntStream.range(0, iterations)
-                .parallel()
-                // simulate a game
-                .mapToObj(idx -> simulateGame(deck, toss(start, idx)))
+        return simulate(deck, seed != null ? seed : Seeds.newSeed(), null);
+    }
+
+    /**
+     * Simulates a deck, emitting intermediate stats while running
+     * <p>
+     * Snapshots merge all chunks of games completed so far, and are emitted at most every {@link #snapshotInterval}
+     * from worker threads: the consumer should return quickly.
+     *
+     * @param deck      the deck to simulate
+     * @param snapshots intermediate stats consumer
+     * @return final stats
+     */
+    public DeckStats simulate(Deck deck, Consumer<DeckStats> snapshots) {
+        return simulate(deck, seed != null ? seed : Seeds.newSeed(), snapshots);
+    }
+
+    /**
+     * Returns a publisher of stats snapshots for the given deck
+     * <p>
+     * Each subscription runs a new simulation in background, receives intermediate snapshots (see
+     * {@link #simulate(Deck, Consumer)}), then the final stats and completion. Snapshots are dropped rather than
+     * stalling the simulation when the subscriber is too slow.
+     * <p>
+     * The simulation is driven from and runs on the {@link #executor} (or on a dedicated pool, shut down once the
+     * simulation is over), and cancelling the subscription cancels it.
+     *
+     * @param deck the deck to simulate
+     * @return stats publisher
+     */
+    public Flow.Publisher<DeckStats> publish(Deck deck) {
+        return subscriber -> {
+            CancellationToken subscription = cancellation != null ? cancellation.child() : new CancellationToken();
+            SubmissionPublisher<DeckStats> publisher = new SubmissionPublisher<>();
+            publisher.subscribe(new CancellingSubscriber<>(subscriber, subscription));
+            ForkJoinPool pool = executor != null ? executor : ParallelRange.newPool(parallelism);
+            pool.execute(() -> {
+                try {
+                    DeckStats stats = simulate(deck, seed != null ? seed : Seeds.newSeed(), pool, subscription, snapshot -> publisher.offer(snapshot, (dropTo, dropped) -> false));
+                    publisher.submit(stats);
+                    publisher.close();
+                } catch (Throwable t) {
+                    publisher.closeExceptionally(t);
+                } finally {
+                    if (pool != executor) {
+                        pool.shutdown();
+                    }
+                }
+            });
+        };
+    }
+
+    /**
+     * Cancels the simulation when the subscription is cancelled
+     */
+    @AllArgsConstructor
+    private static class CancellingSubscriber<T> implements Flow.Subscriber<T> {
+        final Flow.Subscriber<? super T> delegate;
+        final CancellationToken cancellation;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            delegate.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    cancellation.cancel();
+                    subscription.cancel();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(T item) {
+            delegate.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            delegate.onComplete();
+        }
+    }
+
+    private DeckStats simulate(Deck deck, long masterSeed, Consumer<DeckStats> snapshots) {
+        return simulate(deck, masterSeed, executor, cancellation, snapshots);
+    }
+
+    private DeckStats simulate(Deck deck, long masterSeed, ForkJoinPool executor, CancellationToken cancellation, Consumer<DeckStats> snapshots) {
+        // resolve factories once (fails before any game is run)
+        GameFactory games = gameFactory != null ? gameFactory : GameFactory.forPilot(pilotClass);
+        PilotFactory pilots = pilotFactory != null ? pilotFactory : PilotFactory.of(pilotClass);
+        ThreadLocal<Table> tables = ThreadLocal.withInitial(() -> new Table(games, pilots));
+        ResultsCube cube = ParallelRange.reduce(
+                executor,
+                parallelism,
+                iterations,
+                chunkSize,
+                listener,
+                cancellation,
+                () -> new ResultsCube(maxTurns),
+                // simulate a game and count its result
+                (chunkCube, idx) -> simulateGame(deck, toss(start, idx), Seeds.seed(masterSeed, idx), tables.get(), chunkCube),
                 // aggregate results
-                .collect(Collectors.groupingBy(Function.identity()))
-                .entrySet().stream()
-                .map(entry -> GameResult.builder()
-                        .mulligans(entry.getKey().mulligans)
-                        .start(entry.getKey().start)
-                        .outcome(entry.getKey().outcome)
-                        .endTurn(entry.getKey().endTurn)
-                        .count(entry.getValue().size())
-                        .build()
-                )
-                .collect(Collectors.toList());
-        return DeckStats.builder().deck(deck).iterations(iterations).results(results).build();
+                ResultsCube::merge,
+                // publish intermediate results
+                snapshots == null ? null : new Snapshots(deck, masterSeed, snapshots)::chunkCompleted
+        );
+        return stats(deck, masterSeed, cube);
+    }
+
+    private DeckStats stats(Deck deck, long masterSeed, ResultsCube cube) {
+        return DeckStats.builder().deck(deck).iterations((int) cube.total()).seed(masterSeed).results(cube.toResults()).build();
+    }
+
+    /**
+     * Merges completed chunks into a shared cube, and periodically emits stats snapshots
+     */
+    private class Snapshots {
+        final Deck deck;
+        final long masterSeed;
+        final Consumer<DeckStats> consumer;
+        final ResultsCube cube = new ResultsCube(maxTurns);
+        long lastEmission = System.currentTimeMillis();
+
+        Snapshots(Deck deck, long masterSeed, Consumer<DeckStats> consumer) {
+            this.deck = deck;
+            this.masterSeed = masterSeed;
+            this.consumer = consumer;
+        }
+
+        synchronized void chunkCompleted(ResultsCube chunk) {
+            cube.merge(chunk);
+            long now = System.currentTimeMillis();
+            if (now - lastEmission >= snapshotInterval) {
+                lastEmission = now;
+                consumer.accept(stats(deck, masterSeed, cube));
+            }
+        }
+    }
+
+    /**
+     * Compares several versions of a deck using common random numbers
+     * <p>
+     * Game #i of every version is played with the same seed (thus the same shuffles), and each version is compared
+     * game by game to the reference (first) version. Paired differences have a much lower variance than differences
+     * between independent simulations, and need far fewer games to reach the same confidence.
+     *
+     * @param decksProvider provides the different versions of the deck (the first one is the reference)
+     * @return comparison
+     */
+    public Comparison compare(Iterable<Deck> decksProvider) {
+        List<Deck> decks = StreamSupport.stream(decksProvider.spliterator(), false).collect(Collectors.toList());
+        Preconditions.checkArgument(!decks.isEmpty(), "At least one deck is required");
+        // resolve factories once (fails before any game is run)
+        GameFactory games = gameFactory != null ? gameFactory : GameFactory.forPilot(pilotClass);
+        PilotFactory pilots = pilotFactory != null ? pilotFactory : PilotFactory.of(pilotClass);
+        ThreadLocal<Table> tables = ThreadLocal.withInitial(() -> new Table(games, pilots));
+        long masterSeed = seed != null ? seed : Seeds.newSeed();
+        PairedResults paired = ParallelRange.reduce(
+                executor,
+                parallelism,
+                iterations,
+                chunkSize,
+                listener,
+                cancellation,
+                () -> new PairedResults(decks.size(), maxTurns),
+                // simulate the same game with each deck
+                (chunkResults, idx) -> {
+                    Start gameStart = toss(start, idx);
+                    long gameSeed = Seeds.seed(masterSeed, idx);
+                    Table table = tables.get();
+                    int referenceTurn = simulateGame(decks.get(0), gameStart, gameSeed, table, chunkResults.cubes[0]);
+                    for (int variant = 1; variant < decks.size(); variant++) {
+                        int turn = simulateGame(decks.get(variant), gameStart, gameSeed, table, chunkResults.cubes[variant]);
+                        chunkResults.add(variant, referenceTurn, turn);
+                    }
+                },
+                PairedResults::merge
+        );
+        int completed = (int) paired.cubes[0].total();
+        List<DeckStats> stats = new ArrayList<>();
+        List<PairedDifference> differences = new ArrayList<>();
+        for (int variant = 0; variant < decks.size(); variant++) {
+            stats.add(DeckStats.builder().deck(decks.get(variant)).iterations(completed).seed(masterSeed).results(paired.cubes[variant].toResults()).build());
+            if (variant > 0) {
+                differences.add(paired.difference(variant, decks.get(0), decks.get(variant), completed));
+            }
+        }
+        return Comparison.builder().stats(stats).differences(differences).build();
     }
 
     private Start toss(Start policy, int idx) {
@@ -223,42 +481,68 @@ public class GoldfishSimulator {
         }
     }
 
-    GameResult simulateGame(Deck deck, Start start) {
-        // instantiate new game
-        StringWriter logsBuffers = new StringWriter();
-        PrintWriter logsWriter = new PrintWriter(logsBuffers, true);
-
-        // instantiate game (from class)
-        Class<? extends Game> gameClass = (Class) ((ParameterizedType) pilotClass.getGenericSuperclass()).getActualTypeArguments()[0];
-        Game game = null;
+    /**
+     * Simulates one game
+     * <p>
+     * Logs are only produced when an output is set; when a game fails without output, it is replayed (from its seed)
+     * with logs turned on to report them.
+     *
+     * @return end turn ({@code maxTurns + 1} if the game timed out)
+     */
+    int simulateGame(Deck deck, Start start, long gameSeed, Table table, ResultsCube results) {
+        StringWriter logsBuffer = out == null ? null : new StringWriter();
+        PrintWriter logsWriter = logsBuffer == null ? null : new PrintWriter(logsBuffer, true);
         try {
-            Constructor<? extends Game> constructor = gameClass.getDeclaredConstructor(Boolean.TYPE, PrintWriter.class);
-            constructor.setAccessible(true);
-            game = constructor.newInstance(start == Start.OTP, logsWriter);
+            return playGame(deck, start, gameSeed, table, logsWriter, results);
         } catch (Exception e) {
-            throw new RuntimeException("Couldn't instantiate game of type " + gameClass.getSimpleName(), e);
+            throw new GameInternalError("An unexpected error occurred in a game (seed " + gameSeed + ")", logsBuffer == null ? replayLogs(deck, start, gameSeed, new Table(table.games, table.pilots)) : logsBuffer.toString(), e);
+        } finally {
+            // flush buffered logs into (real) output
+            if (out != null) {
+                logsWriter.flush();
+                logsWriter.close();
+                out.println(logsBuffer.toString());
+                out.println();
+            }
         }
+    }
 
-        // instantiate deck pilot (from class)
-        DeckPilot pilot = null;
-        try {
-            Constructor<? extends DeckPilot> constructor = pilotClass.getDeclaredConstructor(gameClass);
-            constructor.setAccessible(true);
-            pilot = constructor.newInstance(game);
+    /**
+     * Replays a game with logs turned on
+     *
+     * @return game logs
+     */
+    private String replayLogs(Deck deck, Start start, long gameSeed, Table table) {
+        StringWriter logsBuffer = new StringWriter();
+        try (PrintWriter logsWriter = new PrintWriter(logsBuffer, true)) {
+            playGame(deck, start, gameSeed, table, logsWriter, new ResultsCube(maxTurns));
         } catch (Exception e) {
-            throw new RuntimeException("Couldn't instantiate pilot of type " + pilotClass.getSimpleName(), e);
+            // expected
         }
+        return logsBuffer.toString();
+    }
+
+    private int playGame(Deck deck, Start start, long gameSeed, Table table, PrintWriter logs, ResultsCube results) {
+        SplittableRandom random = new SplittableRandom(gameSeed);
+
+        // instantiate (or reset) game & deck pilot
+        DeckPilot pilot = table.seat(start == Start.OTP, logs);
+        Game game = pilot.game;
+        game.setRandom(random);
         if (pilot instanceof GameListener) {
             game.addListener((GameListener) pilot);
         }
 
-        logsWriter.println("=====================");
-        logsWriter.println("=== New Game: " + start + " ===");
-        logsWriter.println("=====================");
+        if (logs != null) {
+            logs.println("=====================");
+            logs.println("=== New Game: " + start + " (seed " + gameSeed + ") ===");
+            logs.println("=====================");
+        }
 
         // 1: select opening hand
+        Library library = table.library(deck, random);
         while (true) {
-            Cards library = deck.getMain().shuffle();
+            library.reset();
             Cards hand = library.draw(draw);
             if (pilot.keepHand(hand)) {
                 game.keepHandAndStart(library, hand);
@@ -273,76 +557,326 @@ public class GoldfishSimulator {
             throw new IllegalStateException("You shouldn't have " + game.getHand().size() + " cards in hand after " + game.getMulligans() + " mulligans.");
         }
 
-        try {
-            while (game.getCurrentTurn() <= maxTurns) {
-                // start next turn
-                game.startNextTurn();
-                game.startPhase(Game.Phase.beginning);
+        while (game.getCurrentTurn() <= maxTurns) {
+            // start next turn
+            game.startNextTurn();
+            game.startPhase(Game.Phase.beginning);
+
+            // untap
+            pilot.untapStep();
+
+            // upkeep
+            pilot.upkeepStep();
+
+            // draw (unless first turn on the play)
+            if (!game.isOnThePlay() || game.getCurrentTurn() > 1) {
+                pilot.drawStep();
+            }
+
+            // first main phase
+            game.startPhase(Game.Phase.first_main);
+            pilot.firstMainPhase();
+
+            // combat phase
+            game.startPhase(Game.Phase.combat);
+            pilot.combatPhase();
 
-                // untap
-                pilot.untapStep();
+            // second main phase
+            game.startPhase(Game.Phase.second_main);
+            pilot.secondMainPhase();
 
-                // upkeep
-                pilot.upkeepStep();
+            // end phase
+            game.startPhase(Game.Phase.ending);
+            pilot.endingPhase();
 
-                // draw (unless first turn on the play)
-                if (!game.isOnThePlay() || game.getCurrentTurn() > 1) {
-                    pilot.drawStep();
+            // check no more than 7 cards in hand
+            if (game.getHand().size() > draw) {
+                throw new IllegalStateException("You shouldn't have " + game.getHand().size() + " cards in hand after ending phase.");
+            }
+
+            // check won
+            String winReason = pilot.checkWin();
+            if (winReason != null) {
+                if (logs != null) {
+                    logs.println("===> WIN: " + winReason);
                 }
+                results.add(start, game.getMulligans(), GameResult.Outcome.WON, game.getCurrentTurn());
+                return game.getCurrentTurn();
+            }
+        }
+        if (logs != null) {
+            logs.println("===> MAX TURNS REACHED");
+        }
+        results.add(start, game.getMulligans(), GameResult.Outcome.TIMEOUT, maxTurns + 1);
+        return maxTurns + 1;
+    }
+
+    /**
+     * A game and its pilot, reused by a worker thread from one simulated game to the next
+     */
+    static class Table {
+        final GameFactory games;
+        final PilotFactory pilots;
+        private Game game;
+        private DeckPilot pilot;
+        // one library per deck: compared decks alternate on the same table
+        private final Map<Deck, Library> libraries = new IdentityHashMap<>();
+
+        Table(GameFactory games, PilotFactory pilots) {
+            this.games = games;
+            this.pilots = pilots;
+        }
+
+        /**
+         * Returns the pilot of a new game (the game and pilot are reset when possible)
+         */
+        DeckPilot seat(boolean onThePlay, PrintWriter logs) {
+            if (game == null) {
+                game = games.create(onThePlay, logs);
+                pilot = null;
+            } else {
+                game.reset(onThePlay, logs);
+            }
+            if (pilot == null || !pilot.reset()) {
+                pilot = pilots.create(game);
+            }
+            return pilot;
+        }
 
-                // first main phase
-                game.startPhase(Game.Phase.first_main);
-                pilot.firstMainPhase();
+        /**
+         * Returns a library with the main cards of the given deck, shuffled with the given random generator
+         */
+        Library library(Deck deck, SplittableRandom random) {
+            Library library = libraries.get(deck);
+            if (library == null) {
+                library = Library.of(deck.getMain(), random);
+                libraries.put(deck, library);
+            } else {
+                library.reset(random);
+            }
+            return library;
+        }
+    }
+
+    /**
+     * Dense game results counter, indexed by start × mulligans × outcome × end turn
+     * <p>
+     * Memory only depends on the number of cells, whatever the number of games counted.
+     */
+    static class ResultsCube {
+        private static final Start[] STARTS = {Start.OTP, Start.OTD};
+        private static final GameResult.Outcome[] OUTCOMES = GameResult.Outcome.values();
 
-                // combat phase
-                game.startPhase(Game.Phase.combat);
-                pilot.combatPhase();
+        private final int turns;
+        private int mulligans = 0;
+        private long[] counts = new long[0];
 
-                // second main phase
-                game.startPhase(Game.Phase.second_main);
-                pilot.secondMainPhase();
+        ResultsCube(int maxTurns) {
+            // end turns range from 0 to maxTurns + 1 (timeout)
+            this.turns = maxTurns + 2;
+        }
 
-                // end phase
-                game.startPhase(Game.Phase.ending);
-                pilot.endingPhase();
+        private int index(int start, int mulligans, int outcome, int endTurn) {
+            return ((mulligans * STARTS.length + start) * OUTCOMES.length + outcome) * turns + endTurn;
+        }
 
-                // check no more than 7 cards in hand
-                if (game.getHand().size() > draw) {
-                    throw new IllegalStateException("You shouldn't have " + game.getHand().size() + " cards in hand after ending phase.");
+        private void ensureMulligans(int mulligans) {
+            if (mulligans > this.mulligans) {
+                long[] grown = new long[mulligans * STARTS.length * OUTCOMES.length * turns];
+                System.arraycopy(counts, 0, grown, 0, counts.length);
+                counts = grown;
+                this.mulligans = mulligans;
+            }
+        }
+
+        /**
+         * Counts one game
+         */
+        void add(Start start, int mulligans, GameResult.Outcome outcome, int endTurn) {
+            ensureMulligans(mulligans + 1);
+            counts[index(start == Start.OTP ? 0 : 1, mulligans, outcome.ordinal(), endTurn)]++;
+        }
+
+        /**
+         * Adds all counts from another cube into this one
+         */
+        ResultsCube merge(ResultsCube other) {
+            ensureMulligans(other.mulligans);
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            return this;
+        }
+
+        /**
+         * Returns the total number of games counted
+         */
+        long total() {
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         * Converts non-empty cells into game results
+         */
+        List<GameResult> toResults() {
+            List<GameResult> results = new ArrayList<>();
+            for (int mulligan = 0; mulligan < mulligans; mulligan++) {
+                for (int start = 0; start < STARTS.length; start++) {
+                    for (int outcome = 0; outcome < OUTCOMES.length; outcome++) {
+                        for (int endTurn = 0; endTurn < turns; endTurn++) {
+                            long count = counts[index(start, mulligan, outcome, endTurn)];
+                            if (count > 0) {
+                                results.add(GameResult.builder()
+                                        .start(STARTS[start])
+                                        .mulligans(mulligan)
+                                        .outcome(OUTCOMES[outcome])
+                                        .endTurn(endTurn)
+                                        .count((int) count)
+                                        .build());
+                            }
+                        }
+                    }
                 }
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Paired game results accumulator: counts each deck's results, and sums game-by-game differences between each
+     * variant and the reference deck
+     */
+    static class PairedResults {
+        final int maxTurns;
+        final ResultsCube[] cubes;
+        // win turn difference sums (per variant)
+        final long[] deltaSum;
+        final long[] deltaSqSum;
+        // win-by-turn difference sums (per variant and turn)
+        final long[][] winByDeltaSum;
+        final long[][] winByDeltaSqSum;
+
+        PairedResults(int decks, int maxTurns) {
+            this.maxTurns = maxTurns;
+            cubes = new ResultsCube[decks];
+            for (int deck = 0; deck < decks; deck++) {
+                cubes[deck] = new ResultsCube(maxTurns);
+            }
+            deltaSum = new long[decks];
+            deltaSqSum = new long[decks];
+            winByDeltaSum = new long[decks][maxTurns + 1];
+            winByDeltaSqSum = new long[decks][maxTurns + 1];
+        }
 
-                // check won
-                String winReason = pilot.checkWin();
-                if (winReason != null) {
-                    logsWriter.println("===> WIN: " + winReason);
-                    return GameResult.builder()
-                            .start(start)
-                            .mulligans(game.getMulligans())
-                            .outcome(GameResult.Outcome.WON)
-                            .endTurn(game.getCurrentTurn())
-//                            .reason(winReason)
-                            .build();
+        void add(int variant, int referenceTurn, int turn) {
+            long delta = turn - referenceTurn;
+            deltaSum[variant] += delta;
+            deltaSqSum[variant] += delta * delta;
+            // win-by-turn differences are only non-zero between both end turns
+            int sign = turn < referenceTurn ? 1 : -1;
+            for (int byTurn = Math.min(turn, referenceTurn); byTurn < Math.max(turn, referenceTurn) && byTurn <= maxTurns; byTurn++) {
+                winByDeltaSum[variant][byTurn] += sign;
+                winByDeltaSqSum[variant][byTurn]++;
+            }
+        }
+
+        PairedResults merge(PairedResults other) {
+            for (int deck = 0; deck < cubes.length; deck++) {
+                cubes[deck].merge(other.cubes[deck]);
+                deltaSum[deck] += other.deltaSum[deck];
+                deltaSqSum[deck] += other.deltaSqSum[deck];
+                for (int turn = 0; turn <= maxTurns; turn++) {
+                    winByDeltaSum[deck][turn] += other.winByDeltaSum[deck][turn];
+                    winByDeltaSqSum[deck][turn] += other.winByDeltaSqSum[deck][turn];
                 }
             }
-            logsWriter.println("===> MAX TURNS REACHED");
-            return GameResult.builder()
-                    .start(start)
-                    .mulligans(game.getMulligans())
-                    .outcome(GameResult.Outcome.TIMEOUT)
-                    .endTurn(maxTurns + 1)
-                    .build();
-        } catch (Exception e) {
-            logsWriter.flush();
-            logsWriter.close();
-            throw new GameInternalError("An unexpected error occurred in a game", logsBuffers.toString(), e);
-        } finally {
-            // flush buffered logs into (real) output
-            if (out != null) {
-                logsWriter.flush();
-                logsWriter.close();
-                out.println(logsBuffers.toString());
-                out.println();
+            return this;
+        }
+
+        PairedDifference difference(int variant, Deck reference, Deck deck, long games) {
+            Estimate[] winByTurn = new Estimate[maxTurns + 1];
+            for (int turn = 0; turn <= maxTurns; turn++) {
+                // in percentage points
+                winByTurn[turn] = Estimate.of(winByDeltaSum[variant][turn], winByDeltaSqSum[variant][turn], games).scale(100d);
             }
+            return new PairedDifference(reference, deck, games, Estimate.of(deltaSum[variant], deltaSqSum[variant], games), winByTurn);
+        }
+    }
+
+    /**
+     * Result of a paired comparison between versions of a deck
+     */
+    @Builder
+    @Getter
+    public static class Comparison {
+        /**
+         * Statistics of each deck (the reference first)
+         */
+        final List<DeckStats> stats;
+        /**
+         * Paired differences of each variant against the reference (the first variant being the second deck)
+         */
+        final List<PairedDifference> differences;
+    }
+
+    /**
+     * Game-by-game differences between a variant and the reference deck
+     */
+    @Value
+    public static class PairedDifference {
+        final Deck reference;
+        final Deck deck;
+        final long games;
+        /**
+         * Average end turn difference (negative when the variant wins faster)
+         */
+        final Estimate winTurnDelta;
+        @Getter(AccessLevel.NONE)
+        final Estimate[] winByTurnDelta;
+
+        /**
+         * Difference of win-by-turn percentage (positive when the variant wins more often by the given turn)
+         *
+         * @param turn turn
+         * @return difference in percentage points
+         */
+        public Estimate getWinByTurnDelta(int turn) {
+            return winByTurnDelta[Math.max(0, Math.min(turn, winByTurnDelta.length - 1))];
+        }
+    }
+
+    /**
+     * A mean with its standard error
+     */
+    @Value
+    public static class Estimate implements Comparable<Estimate> {
+        final double mean;
+        final double standardError;
+
+        static Estimate of(long sum, long sumSq, long count) {
+            if (count <= 1) {
+                return new Estimate(count == 1 ? sum : 0, Double.NaN);
+            }
+            double mean = (double) sum / (double) count;
+            double variance = Math.max(0d, ((double) sumSq - mean * (double) sum) / (double) (count - 1));
+            return new Estimate(mean, Math.sqrt(variance / (double) count));
+        }
+
+        Estimate scale(double factor) {
+            return new Estimate(mean * factor, standardError * factor);
+        }
+
+        public String toString() {
+            return String.format("%+.2f ±%.2f", mean, standardError);
+        }
+
+        @Override
+        public int compareTo(Estimate other) {
+            return Double.compare(mean, other.mean);
         }
     }
 
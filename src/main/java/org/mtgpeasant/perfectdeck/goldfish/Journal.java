@@ -0,0 +1,72 @@
+package org.mtgpeasant.perfectdeck.goldfish;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An undo log
+ * <p>
+ * Changes are only recorded while at least one checkpoint is open: outside of a future exploration recording costs
+ * nothing. Checkpoints are nested: each {@link #checkpoint()} must be closed by a {@link #rollback(int)} (in reverse
+ * order).
+ */
+final class Journal {
+    private final List<Runnable> undos = new ArrayList<>();
+    private int checkpoints = 0;
+    private boolean rollingBack = false;
+
+    /**
+     * Determines whether changes have to be recorded
+     */
+    boolean isRecording() {
+        return checkpoints > 0 && !rollingBack;
+    }
+
+    /**
+     * Records the action that undoes a change (ignored when not recording)
+     */
+    void record(Runnable undo) {
+        if (isRecording()) {
+            undos.add(undo);
+        }
+    }
+
+    /**
+     * Opens a checkpoint
+     *
+     * @return checkpoint mark, to be passed to {@link #rollback(int)}
+     */
+    int checkpoint() {
+        checkpoints++;
+        return undos.size();
+    }
+
+    /**
+     * Drops all recorded changes and closes all checkpoints
+     */
+    void clear() {
+        undos.clear();
+        checkpoints = 0;
+        rollingBack = false;
+    }
+
+    /**
+     * Undoes all changes recorded since the given checkpoint, and closes it
+     *
+     * @param mark checkpoint mark
+     */
+    void rollback(int mark) {
+        Preconditions.checkState(checkpoints > 0 && mark <= undos.size(), "No such open checkpoint: %s", mark);
+        rollingBack = true;
+        try {
+            for (int i = undos.size() - 1; i >= mark; i--) {
+                undos.remove(i).run();
+            }
+        } finally {
+            rollingBack = false;
+            checkpoints--;
+        }
+    }
+}
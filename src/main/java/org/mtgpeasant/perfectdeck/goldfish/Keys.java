@@ -0,0 +1,74 @@
+package org.mtgpeasant.perfectdeck.goldfish;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns tag or counter names into small dense integer ids
+ * <p>
+ * Temporary names (starting with {@code '*'}) are flagged at registration. Thread-safe.
+ */
+final class Keys {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private volatile long[] temporary = new long[1];
+    private int size = 0;
+
+    /**
+     * Returns the id of the given name, registering it if needed
+     */
+    int register(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+            }
+            names[size] = name;
+            if (isTemporary(name)) {
+                long[] flags = temporary.length > size >> 6 ? temporary : Arrays.copyOf(temporary, (size >> 6) + 1);
+                flags[size >> 6] |= 1L << size;
+                temporary = flags;
+            } else if (temporary.length <= size >> 6) {
+                temporary = Arrays.copyOf(temporary, (size >> 6) + 1);
+            }
+            ids.put(name, size);
+            return size++;
+        }
+    }
+
+    /**
+     * Returns the id of the given name, or {@code -1} if it was never registered
+     */
+    int idOf(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * Returns the temporary flags bitset word with the given index
+     */
+    long temporaryWord(int word) {
+        long[] flags = temporary;
+        return word < flags.length ? flags[word] : 0L;
+    }
+
+    boolean isTemporary(int id) {
+        return (temporaryWord(id >> 6) & (1L << id)) != 0;
+    }
+
+    static boolean isTemporary(String name) {
+        return name.startsWith("*");
+    }
+}
@@ -0,0 +1,192 @@
+package org.mtgpeasant.perfectdeck.goldfish;
+
+import lombok.Value;
+import org.mtgpeasant.perfectdeck.common.cards.CardRegistry;
+import org.mtgpeasant.perfectdeck.common.mana.Mana;
+
+import java.util.Arrays;
+
+/**
+ * An upper bound of the mana that can be produced in the current game state: max amount of each color, and max total
+ * <p>
+ * Computed by {@link Game#getManaCapability(Rules)} from the pool and the mana producers declared in {@link Rules}, and
+ * cached as long as the game state doesn't change. Used to reject impossible costs at once, before planning any
+ * production.
+ */
+@Value
+public class ManaCapability {
+    private static final long GENERIC = Mana.pack(0, 0, 0, 0, 0, Mana.MAX);
+
+    /**
+     * Max amount of each color (generic lane is {@link Mana#MAX})
+     */
+    final long colors;
+    /**
+     * Max total amount of mana
+     */
+    final int total;
+
+    /**
+     * Determines whether the given cost may be paid (if {@code false}, it can't for sure)
+     */
+    public boolean mayPay(Mana cost) {
+        return Mana.contains(colors, cost.getPacked()) && Mana.ccm(cost.getPacked()) <= total;
+    }
+
+    /**
+     * Returns this capability, plus the given extra mana
+     */
+    public ManaCapability plus(Mana extra) {
+        return new ManaCapability(Mana.plus(colors, extra.getPacked() & ~GENERIC), total + extra.ccm());
+    }
+
+    /**
+     * Creates empty mana producers rules
+     */
+    public static Rules rules() {
+        return new Rules();
+    }
+
+    /**
+     * Declares the cards that produce mana
+     * <p>
+     * Each producer produces one of the given amounts of mana.
+     */
+    public static class Rules {
+        private final Producers tap = new Producers();
+        private final Producers sacrifice = new Producers();
+        private final Producers discard = new Producers();
+        private final Producers land = new Producers();
+
+        private Rules() {
+        }
+
+        /**
+         * Permanents that produce mana when tapped (only untapped ones count)
+         */
+        public Rules tap(Mana[] produceable, String... cards) {
+            tap.add(produceable, cards);
+            return this;
+        }
+
+        public Rules tap(Mana produce, String... cards) {
+            return tap(new Mana[]{produce}, cards);
+        }
+
+        /**
+         * Permanents that produce mana when sacrificed (tapped or not)
+         */
+        public Rules sacrifice(Mana[] produceable, String... cards) {
+            sacrifice.add(produceable, cards);
+            return this;
+        }
+
+        public Rules sacrifice(Mana produce, String... cards) {
+            return sacrifice(new Mana[]{produce}, cards);
+        }
+
+        /**
+         * Cards in hand that produce mana when discarded
+         */
+        public Rules discard(Mana produce, String... cards) {
+            discard.add(new Mana[]{produce}, cards);
+            return this;
+        }
+
+        /**
+         * Lands in hand that produce mana when landed then tapped (only one, if not landed yet)
+         */
+        public Rules land(Mana[] produceable, String... cards) {
+            land.add(produceable, cards);
+            return this;
+        }
+
+        public Rules land(Mana produce, String... cards) {
+            return land(new Mana[]{produce}, cards);
+        }
+
+        ManaCapability compute(Game game) {
+            long colors = game.getPool().getPacked();
+            int total = Mana.ccm(colors);
+            for (Permanent permanent : game.getBattlefield()) {
+                int i = tap.indexOf(permanent.getCardId());
+                if (i >= 0 && !permanent.isTapped()) {
+                    colors = Mana.plus(colors, tap.colors[i]);
+                    total += tap.totals[i];
+                }
+                i = sacrifice.indexOf(permanent.getCardId());
+                if (i >= 0) {
+                    colors = Mana.plus(colors, sacrifice.colors[i]);
+                    total += sacrifice.totals[i];
+                }
+            }
+            for (int i = 0; i < discard.size; i++) {
+                int count = game.getHand().countId(discard.ids[i]);
+                for (int n = 0; n < count; n++) {
+                    colors = Mana.plus(colors, discard.colors[i]);
+                }
+                total += count * discard.totals[i];
+            }
+            if (!game.isLanded()) {
+                // a single land drop: max of each land
+                long landColors = 0L;
+                int landTotal = 0;
+                for (int i = 0; i < land.size; i++) {
+                    if (game.getHand().containsId(land.ids[i])) {
+                        landColors = max(landColors, land.colors[i]);
+                        landTotal = Math.max(landTotal, land.totals[i]);
+                    }
+                }
+                colors = Mana.plus(colors, landColors);
+                total += landTotal;
+            }
+            return new ManaCapability((colors & ~GENERIC) | GENERIC, total);
+        }
+    }
+
+    /**
+     * Producers by card id, with the max of each color and max total they produce
+     */
+    private static class Producers {
+        private int[] ids = new int[4];
+        private long[] colors = new long[4];
+        private int[] totals = new int[4];
+        private int size = 0;
+
+        void add(Mana[] produceable, String... cards) {
+            long maxColors = 0L;
+            int maxTotal = 0;
+            for (Mana mana : produceable) {
+                maxColors = max(maxColors, mana.getPacked() & ~GENERIC);
+                maxTotal = Math.max(maxTotal, mana.ccm());
+            }
+            for (String card : cards) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                    colors = Arrays.copyOf(colors, size * 2);
+                    totals = Arrays.copyOf(totals, size * 2);
+                }
+                ids[size] = CardRegistry.register(card);
+                colors[size] = maxColors;
+                totals[size] = maxTotal;
+                size++;
+            }
+        }
+
+        int indexOf(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Lane-wise max of two packed manas
+     */
+    private static long max(long mana, long other) {
+        return Mana.plus(mana, Mana.notExtracted(mana, other & ~GENERIC));
+    }
+}
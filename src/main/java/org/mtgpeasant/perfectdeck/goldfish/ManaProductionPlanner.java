@@ -4,13 +4,46 @@ import lombok.Builder;
 import lombok.Value;
 import org.mtgpeasant.perfectdeck.common.mana.Mana;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
+import java.util.function.Supplier;
 
+/**
+ * Plans the production of mana from a list of mana sources
+ * <p>
+ * The planner searches (branch-and-bound) all combinations of sources and produced mana, and returns the plan that pays
+ * the cost with the lowest {@link Objective price}. Among plans with the same price, the ones using the first sources
+ * in the list are preferred: sources are expected in order of preference.
+ * <p>
+ * The search is capped to {@link #MAX_STATES}: beyond that the best plan found so far is returned. If none was found
+ * yet, the sources are searched again by increasing number of used sources, with the same budget. When both are
+ * exhausted, the cost is considered unpayable.
+ */
 public class ManaProductionPlanner {
 
+    /**
+     * Max number of states (combinations and scheduling steps) explored by a search, and by its fallback
+     */
+    static final int MAX_STATES = 10_000;
+
+    /**
+     * Prices the use of a mana source: the planner minimizes the total price of the plan
+     */
+    @FunctionalInterface
+    public interface Objective {
+        int price(Game game, ManaSource source);
+    }
+
+    /**
+     * Uses as few sources as possible
+     */
+    public static final Objective FEWEST_SOURCES = (game, source) -> 1;
+
+    /**
+     * Uses as few {@link ManaSource#isReusable() used up} sources as possible (sacrificed or discarded cards), then as
+     * few sources as possible
+     */
+    public static final Objective PRESERVE_CARDS = (game, source) -> source.isReusable() ? 1 : 64;
+
     public static boolean maybeProduce(Game game, List<ManaSource> sources, Mana cost) {
         Optional<Plan> plan = plan(game, sources, cost);
         if (plan.isPresent()) {
@@ -22,95 +55,251 @@ public class ManaProductionPlanner {
     }
 
     public static Optional<Plan> plan(Game game, List<ManaSource> sources, Mana cost) {
-        return complete(game, game.getPool(), new ArrayList<>(sources), cost);
+        return plan(game, sources, cost, PRESERVE_CARDS);
     }
 
-    static Optional<Plan> complete(Game game, Mana pool, List<ManaSource> sources, Mana cost) {
-        Plan plan = new Plan();
-        while (!pool.contains(cost)) {
-            Mana.Extraction result = pool.extract(cost);
-            Optional<Plan> next = partial(game, pool, sources, result.getNotExtracted());
-            if (!next.isPresent()) {
-                return Optional.empty();
+    /**
+     * Returns the cheapest plan that pays the given cost
+     *
+     * @param game      game
+     * @param sources   mana sources, in order of preference
+     * @param cost      cost to pay
+     * @param objective plan price
+     */
+    public static Optional<Plan> plan(Game game, List<ManaSource> sources, Mana cost, Objective objective) {
+        Search search = new Search(game, sources, cost, objective);
+        search.explore(0, 0, search.pool, search.required, 0);
+        if (search.best == null && search.exhausted()) {
+            // the cap was reached before any plan was found: search again using at most 0, 1, 2, ... sources, with a
+            // budget of its own
+            search.states = 0;
+            for (search.maxUsed = 0; search.best == null && !search.exhausted() && search.maxUsed <= sources.size(); search.maxUsed++) {
+                search.explore(0, 0, search.pool, search.required, 0);
             }
-            plan.addAll(next.get());
-            pool = pool.plus(next.get().produce());
         }
+        return Optional.ofNullable(search.best);
+    }
 
-        // TODO: remove steps if we have too much mana
-
-        // we did it
-        return Optional.of(plan);
+    /**
+     * Creates a planning session, that memoizes plans as long as the game state doesn't change
+     *
+     * @param game    game
+     * @param sources mana sources supplier (invoked once per game state)
+     */
+    public static Session session(Game game, Supplier<List<ManaSource>> sources) {
+        return new Session(game, sources);
     }
 
-//    static Mana pickOne(Mana cost) {
-//        if (cost.getB() > 0) {
-//            return B;
-//        } else if (cost.getR() > 0) {
-//            return R;
-//        } else if (cost.getG() > 0) {
-//            return G;
-//        } else if (cost.getU() > 0) {
-//            return U;
-//        } else if (cost.getW() > 0) {
-//            return W;
-//        } else {
-//            return ONE;
-//        }
-//    }
+    /**
+     * A planning session on a game
+     * <p>
+     * Within a phase, pilots typically ask many times whether the same costs can be paid without anything changing in
+     * between: plans are cached by cost, and the whole cache (as well as the mana sources list) is dropped as soon as
+     * the {@link Game#getVersion() game version} changes (mana pool, permanents, hand, ...). Executing a plan changes
+     * the game, thus invalidates the cache.
+     */
+    public static class Session {
+        private final Game game;
+        private final Supplier<List<ManaSource>> sourcesSupplier;
+        private final Map<Long, Optional<Plan>> plans = new HashMap<>();
+        private List<ManaSource> sources;
+        private long version = -1L;
+
+        private Session(Game game, Supplier<List<ManaSource>> sourcesSupplier) {
+            this.game = game;
+            this.sourcesSupplier = sourcesSupplier;
+        }
+
+        public Game getGame() {
+            return game;
+        }
+
+        /**
+         * Same as {@link ManaProductionPlanner#plan(Game, List, Mana)}, memoized
+         */
+        public Optional<Plan> plan(Mana cost) {
+            long current = game.getVersion();
+            if (current != version) {
+                version = current;
+                plans.clear();
+                sources = sourcesSupplier.get();
+            }
+            return plans.computeIfAbsent(cost.getPacked(), packed -> ManaProductionPlanner.plan(game, sources, cost));
+        }
+
+        public boolean canPay(Mana cost) {
+            return plan(cost).isPresent();
+        }
+
+        /**
+         * Same as {@link ManaProductionPlanner#maybeProduce(Game, List, Mana)}, memoized
+         */
+        public boolean maybeProduce(Mana cost) {
+            Optional<Plan> plan = plan(cost);
+            if (plan.isPresent()) {
+                plan.get().execute(game);
+                return true;
+            } else {
+                return false;
+            }
+        }
+    }
 
     /**
-     * Returns a plan that produces a part of the given cost
+     * A branch-and-bound search: each source is either used (with one of its productions) or not, sources being
+     * considered in order
      */
-    static Optional<Plan> partial(Game game, Mana pool, List<ManaSource> sources, Mana cost) {
-        // TODO: start with coloured mana
-        for (ManaSource source : sources) {
-            Set<Mana> produceable = source.produces(game);
-            for (Mana selectedProduction : produceable) {
-                Mana.Extraction extraction = selectedProduction.extract(cost);
-                if (!extraction.getExtracted().isEmpty()) {
-                    // yes, this source produces required mana
-                    Mana sourceCost = source.cost(game);
-//                    if (sourceCost.isEmpty()) {
-//                        selectedCost = Mana.zero();
-//                    } else {
-////                        // can we pay one of the cost ?
-////                        for (Mana aCost : cost) {
-////                            List<ManaSource> remainingSources = new ArrayList<>(sources);
-////                            remainingSources.remove(source);
-////                            findFirst(game, remainingSources, aCost); // TODO: not unitary
-////                            // TODO: pay from pool (ex: dark ritual)
-////                        }
-////                        TODO: need to try all alternative cost and sources until a solution is found
-//                    }
-
-                    if (sourceCost.isEmpty()) {
-                        sources.remove(source);
-                        return Optional.of(new Plan(new Plan.Step(source, sourceCost, selectedProduction)));
-                    } else {
-                        if(selectedProduction.contains(cost)) {
-                            // maybe we can borrow in pool (ex: Dark Ritual)
-                            if(pool.contains(cost)) {
-                                return Optional.of(new Plan(new Plan.Step(source, sourceCost, selectedProduction)));
-                            }
-                        }
-                        // otherwise look for remaining source(s) to pay the cost
-                        List<ManaSource> remainingSources = new ArrayList<>(sources);
-                        remainingSources.remove(source);
-                        Optional<Plan> sub = complete(game, pool, remainingSources, sourceCost);
-                        if (sub.isPresent()) {
-                            for (Plan.Step step : sub.get()) {
-                                sources.remove(step);
-                            }
-                            sources.remove(source);
-                            sub.get().add(new Plan.Step(source, sourceCost, selectedProduction));
-                            return sub;
-                        }
-                    }
+    private static class Search {
+        private static final long UNUSED = -1L;
+
+        private final long pool;
+        private final long required;
+        private final ManaSource[] sources;
+        private final Mana[] costs;
+        private final long[][] productions;
+        private final int[] prices;
+        // upper bounds of the mana that can be produced by sources from index i (costs ignored): lane-wise max and max
+        // amount of the productions of each source
+        private final long[] potential;
+        private final int[] potentialAmount;
+        private final long[] used;
+        private int states = 0;
+        // max number of used sources (fallback)
+        private int maxUsed = Integer.MAX_VALUE;
+        private int bestPrice = Integer.MAX_VALUE;
+        private Plan best;
+
+        Search(Game game, List<ManaSource> sources, Mana cost, Objective objective) {
+            int count = sources.size();
+            this.pool = game.getPool().getPacked();
+            this.required = cost.getPacked();
+            this.sources = sources.toArray(new ManaSource[count]);
+            this.costs = new Mana[count];
+            this.productions = new long[count][];
+            this.prices = new int[count];
+            this.potential = new long[count + 1];
+            this.potentialAmount = new int[count + 1];
+            this.used = new long[count];
+            for (int i = 0; i < count; i++) {
+                costs[i] = this.sources[i].cost(game);
+                productions[i] = this.sources[i].productions(game);
+                prices[i] = objective.price(game, this.sources[i]);
+                used[i] = UNUSED;
+            }
+            for (int i = count - 1; i >= 0; i--) {
+                long max = 0L;
+                int maxAmount = 0;
+                for (long production : productions[i]) {
+                    max = Mana.max(max, production);
+                    maxAmount = Math.max(maxAmount, Mana.ccm(production));
+                }
+                potential[i] = Mana.plus(potential[i + 1], max);
+                potentialAmount[i] = potentialAmount[i + 1] + maxAmount;
+            }
+        }
+
+        boolean exhausted() {
+            return states >= MAX_STATES;
+        }
+
+        /**
+         * @param i        next source to consider
+         * @param price    price of the sources used so far
+         * @param produced pool + mana produced by the sources used so far
+         * @param needed   cost + cost of the sources used so far
+         * @param count    number of sources used so far
+         */
+        void explore(int i, int price, long produced, long needed, int count) {
+            if (exhausted() || price >= bestPrice) {
+                return;
+            }
+            states++;
+            if (Mana.contains(produced, needed)) {
+                Plan plan = schedule();
+                if (plan != null) {
+                    // using more sources can't be cheaper
+                    bestPrice = price;
+                    best = plan;
+                    return;
+                }
+            }
+            if (i == sources.length || count == maxUsed || !canProduce(i, produced, needed)) {
+                return;
+            }
+            for (long production : productions[i]) {
+                if (production == 0L) {
+                    continue;
+                }
+                used[i] = production;
+                explore(i + 1, price + prices[i], Mana.plus(produced, used[i]), Mana.plus(needed, costs[i].getPacked()), count + 1);
+            }
+            used[i] = UNUSED;
+            explore(i + 1, price, produced, needed, count);
+        }
+
+        /**
+         * Determines whether sources from index i may produce what is still needed
+         */
+        private boolean canProduce(int i, long produced, long needed) {
+            return Mana.ccm(produced) + potentialAmount[i] >= Mana.ccm(needed) && Mana.contains(Mana.plus(produced, potential[i]), needed);
+        }
+
+        /**
+         * Orders the used sources so that each one's cost can be paid when activated: free sources first, then the
+         * others in any workable order
+         *
+         * @return the plan, or {@code null} if there is no workable order
+         */
+        private Plan schedule() {
+            Plan plan = new Plan();
+            long available = pool;
+            List<Integer> paying = new ArrayList<>();
+            long reserved = required;
+            for (int i = 0; i < sources.length; i++) {
+                if (used[i] == UNUSED) {
+                    continue;
+                }
+                if (costs[i].isEmpty()) {
+                    plan.add(new Plan.Step(sources[i], costs[i], Mana.of(used[i])));
+                    available = Mana.plus(available, used[i]);
+                } else {
+                    paying.add(i);
+                    reserved = Mana.plus(reserved, costs[i].getPacked());
                 }
             }
+            return schedule(plan, paying, available, reserved) ? plan : null;
+        }
+
+        /**
+         * @param available mana available before activating the remaining paying sources
+         * @param reserved  cost + cost of the remaining paying sources (generic costs are paid with other mana first)
+         */
+        private boolean schedule(Plan plan, List<Integer> paying, long available, long reserved) {
+            if (paying.isEmpty()) {
+                return Mana.contains(available, required);
+            }
+            for (int k = 0; k < paying.size(); k++) {
+                if (exhausted()) {
+                    return false;
+                }
+                states++;
+                int i = paying.get(k);
+                long cost = costs[i].getPacked();
+                if (!Mana.contains(available, cost)) {
+                    continue;
+                }
+                long keep = Mana.minus(reserved, cost);
+                long next = Mana.plus(Mana.minus(available, cost, keep), used[i]);
+                paying.remove(k);
+                plan.add(new Plan.Step(sources[i], costs[i], Mana.of(used[i])));
+                if (schedule(plan, paying, next, keep)) {
+                    return true;
+                }
+                plan.remove(plan.size() - 1);
+                paying.add(k, i);
+            }
+            return false;
         }
-        return Optional.empty();
     }
 
     @Builder
@@ -134,14 +323,18 @@ public class ManaProductionPlanner {
          * Computes the global mana produced by the plan (also removing inner costs)
          */
         public Mana produce() {
-            Mana sum = Mana.zero();
+            return Mana.of(producePacked());
+        }
+
+        long producePacked() {
+            long sum = 0L;
             // first add production
             for (Step step : this) {
-                sum = sum.plus(step.produce);
+                sum = Mana.plus(sum, step.produce.getPacked());
             }
             // then remove costs
             for (Step step : this) {
-                sum = sum.minus(step.cost);
+                sum = Mana.minus(sum, step.cost.getPacked());
             }
             return sum;
         }
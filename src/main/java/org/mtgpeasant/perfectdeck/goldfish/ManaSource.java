@@ -20,6 +20,15 @@ public interface ManaSource {
      */
     Set<Mana> produces(Game game);
 
+    /**
+     * Returns the possible amounts of mana this mana source can produce, packed (see {@link Mana#getPacked()})
+     * <p>
+     * Used by the planner: implementations should return a precomputed array (that must not be modified).
+     */
+    default long[] productions(Game game) {
+        return packed(produces(game));
+    }
+
     /**
      * Makes the mana source produce the required mana at the given cost
      *
@@ -29,10 +38,19 @@ public interface ManaSource {
      */
     void doProduce(Game game, Mana cost, Mana produce);
 
+    /**
+     * Determines whether this mana source can be used again in a next turn (a tapped land), or is used up (a
+     * sacrificed or discarded card)
+     */
+    default boolean isReusable() {
+        return true;
+    }
+
     static List<ManaSource> getTapSources(Game game, String cardName, Mana cost, Set<Mana> produceable) {
+        long[] productions = packed(produceable);
         return game.getBattlefield().stream()
                 .filter(withName(cardName).and(untapped())) // TODO: filter out creatures with summoning sickness
-                .map(card -> tap(card, cost, produceable))
+                .map(card -> tap(card, cost, produceable, productions))
                 .collect(Collectors.toList());
     }
 
@@ -41,9 +59,10 @@ public interface ManaSource {
 //    }
 
     static List<ManaSource> getSacrificeSources(Game game, String cardName, Mana cost, Set<Mana> produceable) {
+        long[] productions = packed(produceable);
         return game.getBattlefield().stream()
                 .filter(withName(cardName).and(untapped()))
-                .map(card -> sacrifice(card, cost, produceable))
+                .map(card -> sacrifice(card, cost, produceable, productions))
                 .collect(Collectors.toList());
     }
 
@@ -52,16 +71,18 @@ public interface ManaSource {
 //    }
 
     static List<ManaSource> getDiscardSources(Game game, String cardName, Set<Mana> produceable) {
+        long[] productions = packed(produceable);
         return game.getHand().stream()
                 .filter(card -> card.equals(cardName))
-                .map(card -> discard(card, produceable))
+                .map(card -> discard(card, produceable, productions))
                 .collect(Collectors.toList());
     }
 
     static List<ManaSource> getCastSources(Game game, String cardName, Game.Area from, Game.Area to, Mana cost, Set<Mana> produceable, Game.CardType... types) {
+        long[] productions = packed(produceable);
         return game.getHand().stream()
                 .filter(card -> card.equals(cardName))
-                .map(card -> cast(card, from, to, cost, produceable, types))
+                .map(card -> cast(card, from, to, cost, produceable, productions, types))
                 .collect(Collectors.toList());
     }
 
@@ -81,6 +102,10 @@ public interface ManaSource {
      * @param produceable all possible amounts of mana that can be produced by the card when tapped
      */
     static ManaSource tap(Permanent permanent, Mana cost, Set<Mana> produceable) {
+        return tap(permanent, cost, produceable, packed(produceable));
+    }
+
+    private static ManaSource tap(Permanent permanent, Mana cost, Set<Mana> produceable, long[] productions) {
         return new ManaSource() {
             @Override
             public Mana cost(Game game) {
@@ -92,6 +117,11 @@ public interface ManaSource {
                 return produceable;
             }
 
+            @Override
+            public long[] productions(Game game) {
+                return productions;
+            }
+
             @Override
             public void doProduce(Game game, Mana cost, Mana produce) {
                 if (permanent.hasType(Game.CardType.land)) {
@@ -127,6 +157,10 @@ public interface ManaSource {
      * @param produceable all possible amounts of mana that can be produced by the card when tapped
      */
     static ManaSource sacrifice(Permanent permanent, Mana cost, Set<Mana> produceable) {
+        return sacrifice(permanent, cost, produceable, packed(produceable));
+    }
+
+    private static ManaSource sacrifice(Permanent permanent, Mana cost, Set<Mana> produceable, long[] productions) {
         return new ManaSource() {
             @Override
             public Mana cost(Game game) {
@@ -138,12 +172,22 @@ public interface ManaSource {
                 return produceable;
             }
 
+            @Override
+            public long[] productions(Game game) {
+                return productions;
+            }
+
             @Override
             public void doProduce(Game game, Mana cost, Mana produce) {
                 game.sacrifice(permanent);
                 game.add(produce);
             }
 
+            @Override
+            public boolean isReusable() {
+                return false;
+            }
+
             @Override
             public String toString() {
                 return "sacrifice [" + permanent + "]";
@@ -168,6 +212,10 @@ public interface ManaSource {
      * @param produceable all possible amounts of mana that can be produced by the card when discarded
      */
     static ManaSource discard(String card, Set<Mana> produceable) {
+        return discard(card, produceable, packed(produceable));
+    }
+
+    private static ManaSource discard(String card, Set<Mana> produceable, long[] productions) {
         return new ManaSource() {
             @Override
             public Mana cost(Game game) {
@@ -179,12 +227,22 @@ public interface ManaSource {
                 return produceable;
             }
 
+            @Override
+            public long[] productions(Game game) {
+                return productions;
+            }
+
             @Override
             public void doProduce(Game game, Mana cost, Mana produce) {
                 game.discard(card);
                 game.add(produce);
             }
 
+            @Override
+            public boolean isReusable() {
+                return false;
+            }
+
             @Override
             public String toString() {
                 return "discard [" + card + "]";
@@ -203,6 +261,10 @@ public interface ManaSource {
      * @param types       card type(s)
      */
     static ManaSource cast(String card, Game.Area from, Game.Area to, Mana cost, Set<Mana> produceable, Game.CardType... types) {
+        return cast(card, from, to, cost, produceable, packed(produceable), types);
+    }
+
+    private static ManaSource cast(String card, Game.Area from, Game.Area to, Mana cost, Set<Mana> produceable, long[] productions, Game.CardType... types) {
         return new ManaSource() {
             @Override
             public Mana cost(Game game) {
@@ -214,12 +276,22 @@ public interface ManaSource {
                 return produceable;
             }
 
+            @Override
+            public long[] productions(Game game) {
+                return productions;
+            }
+
             @Override
             public void doProduce(Game game, Mana cost, Mana produce) {
                 game.cast(card, from, to, cost, types);
                 game.add(produce);
             }
 
+            @Override
+            public boolean isReusable() {
+                return false;
+            }
+
             @Override
             public String toString() {
                 return "cast [" + card + "]";
@@ -233,10 +305,12 @@ public interface ManaSource {
         public static class Option {
             final String card;
             final Set<Mana> produceable;
+            final long[] productions;
 
             Option(String card, Mana... produceable) {
                 this.card = card;
                 this.produceable = oneOf(produceable);
+                this.productions = packed(this.produceable);
             }
 
             @Override
@@ -249,6 +323,8 @@ public interface ManaSource {
             return new Option(name, produceable);
         }
 
+        private static final long[] NONE = new long[0];
+
         final Option[] options;
 
         private List<Option> landable(Game game) {
@@ -290,6 +366,43 @@ public interface ManaSource {
             }
         }
 
+        /**
+         * Same as {@link #produces(Game)}, only allocates when several lands can be landed
+         */
+        @Override
+        public long[] productions(Game game) {
+            if (game.isLanded()) {
+                return NONE;
+            }
+            long[] productions = NONE;
+            for (Option opt : options) {
+                if (!game.getHand().contains(opt.card)) {
+                    continue;
+                }
+                if (productions.length == 0) {
+                    productions = opt.productions;
+                } else {
+                    // combine with previous options
+                    for (long production : opt.productions) {
+                        if (!contains(productions, production)) {
+                            productions = Arrays.copyOf(productions, productions.length + 1);
+                            productions[productions.length - 1] = production;
+                        }
+                    }
+                }
+            }
+            return productions;
+        }
+
+        private static boolean contains(long[] productions, long production) {
+            for (long p : productions) {
+                if (p == production) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
         @Override
         public void doProduce(Game game, Mana cost, Mana produce) {
             List<Option> landable = landable(game);
@@ -309,6 +422,18 @@ public interface ManaSource {
         }
     }
 
+    /**
+     * Packs the given amounts of mana (see {@link #productions(Game)})
+     */
+    static long[] packed(Set<Mana> manas) {
+        long[] packed = new long[manas.size()];
+        int i = 0;
+        for (Mana mana : manas) {
+            packed[i++] = mana.getPacked();
+        }
+        return packed;
+    }
+
     static HashSet<Mana> oneOf(Mana... manas) {
         return new HashSet<>(Arrays.asList(manas));
     }
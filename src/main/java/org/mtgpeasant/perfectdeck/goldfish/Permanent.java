@@ -1,25 +1,66 @@
 package org.mtgpeasant.perfectdeck.goldfish;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import org.mtgpeasant.perfectdeck.common.cards.CardRegistry;
+import org.mtgpeasant.perfectdeck.common.utils.Zobrist;
 
 import java.util.*;
 import java.util.function.Predicate;
 
 /**
  * A card with its state
+ * <p>
+ * Types are stored as a bitmask, tags as a bitset over interned tag ids and counters as an array indexed by interned
+ * counter ids: cloning a permanent only copies two small arrays.
  */
 @Data
 public class Permanent implements Cloneable {
+    private static final Game.CardType[] TYPES = Game.CardType.values();
+    private static final long[] NO_TAGS = new long[0];
+    private static final int[] NO_COUNTERS = new int[0];
+    static final Keys TAGS = new Keys();
+    static final Keys COUNTERS = new Keys();
+
     final String card;
-    final Set<Game.CardType> types;
+    final int cardId;
+    @Getter(AccessLevel.NONE)
+    final int typeBits;
     boolean tapped = false;
     Boolean sickness = false;
-    Set<String> tags = new HashSet<>();
-    Map<String, Integer> counters = new HashMap<>();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    long[] tagBits = NO_TAGS;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    int[] counterValues = NO_COUNTERS;
+
+    // indexing state (maintained by the owning permanents list)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    transient Permanents owner;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    transient long order;
 
     Permanent(String card, Set<Game.CardType> types) {
+        this(card, typeBits(types));
+    }
+
+    Permanent(String card, int typeBits) {
         this.card = card;
-        this.types = types;
+        this.cardId = CardRegistry.register(card);
+        this.typeBits = typeBits;
+    }
+
+    private static int typeBits(Collection<Game.CardType> types) {
+        int bits = 0;
+        for (Game.CardType type : types) {
+            bits |= 1 << type.ordinal();
+        }
+        return bits;
     }
 
     /**
@@ -29,16 +70,12 @@ public class Permanent implements Cloneable {
     protected Permanent clone() {
         try {
             Permanent clone = (Permanent) super.clone();
-            clone.tags = (Set<String>) ((HashSet) tags).clone();
-            clone.counters = (Map<String, Integer>) ((HashMap) counters).clone();
+            clone.owner = null;
+            clone.tagBits = tagBits.length == 0 ? NO_TAGS : tagBits.clone();
+            clone.counterValues = counterValues.length == 0 ? NO_COUNTERS : counterValues.clone();
             return clone;
         } catch (CloneNotSupportedException cnse) {
-            Permanent copy = new Permanent(card, types)
-                    .setSickness(sickness)
-                    .setTapped(tapped);
-            copy.setTags((Set<String>) ((HashSet) tags).clone());
-            copy.setCounters((Map<String, Integer>) ((HashMap) counters).clone());
-            return copy;
+            throw new InternalError(cnse);
         }
     }
 
@@ -46,35 +83,63 @@ public class Permanent implements Cloneable {
      * Creates a card with specified name and types
      */
     public static Permanent permanent(String name, Game.CardType... types) {
-        return new Permanent(name, new HashSet<>(Arrays.asList(types)));
+        return new Permanent(name, typeBits(Arrays.asList(types)));
+    }
+
+    /**
+     * Returns the card types
+     */
+    public Set<Game.CardType> getTypes() {
+        EnumSet<Game.CardType> types = EnumSet.noneOf(Game.CardType.class);
+        for (Game.CardType type : TYPES) {
+            if (hasType(type)) {
+                types.add(type);
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Returns the card types as a bitmask of {@link Game.CardType} ordinals
+     */
+    public int getTypeBits() {
+        return typeBits;
     }
 
     /**
      * Returns the number of counters of given name
      */
     public int getCounter(String name) {
-        return counters.getOrDefault(name, 0);
+        return counter(COUNTERS.idOf(name));
+    }
+
+    private int counter(int id) {
+        return id >= 0 && id < counterValues.length ? counterValues[id] : 0;
     }
 
     /**
      * Determines whether this card has the given type
      */
     public boolean hasType(Game.CardType type) {
-        return types.contains(type);
+        return (typeBits & (1 << type.ordinal())) != 0;
     }
 
     /**
      * Determines whether this card has a counter of the given name
      */
     public boolean hasCounter(String name) {
-        return counters.get(name) != null;
+        return getCounter(name) != 0;
     }
 
     /**
      * Determines whether this card has the given tag
      */
     public boolean hasTag(String name) {
-        return tags.contains(name);
+        return hasTag(TAGS.idOf(name));
+    }
+
+    private boolean hasTag(int id) {
+        return id >= 0 && (id >> 6) < tagBits.length && (tagBits[id >> 6] & (1L << id)) != 0;
     }
 
     /**
@@ -86,12 +151,17 @@ public class Permanent implements Cloneable {
      * @param count number of counter to add
      */
     public Permanent addCounter(String name, int count) {
-        Integer newCount = counters.getOrDefault(name, 0) + count;
-        if (newCount == 0) {
-            counters.remove(name);
+        int id = COUNTERS.register(name);
+        if (id >= counterValues.length) {
+            if (count == 0) {
+                return this;
+            }
+            changing();
+            counterValues = Arrays.copyOf(counterValues, id + 1);
         } else {
-            counters.put(name, newCount);
+            changing();
         }
+        counterValues[id] += count;
         return this;
     }
 
@@ -115,7 +185,12 @@ public class Permanent implements Cloneable {
      * <strong>Important</strong>: a tag starting with {@code '*'} is automatically cleaned-up at end of turn
      */
     public Permanent tag(String name) {
-        tags.add(name);
+        int id = TAGS.register(name);
+        changing();
+        if ((id >> 6) >= tagBits.length) {
+            tagBits = Arrays.copyOf(tagBits, (id >> 6) + 1);
+        }
+        tagBits[id >> 6] |= 1L << id;
         return this;
     }
 
@@ -123,14 +198,224 @@ public class Permanent implements Cloneable {
      * Removes the given tag
      */
     public Permanent removeTag(String name) {
-        tags.remove(name);
+        int id = TAGS.idOf(name);
+        if (hasTag(id)) {
+            changing();
+            tagBits[id >> 6] &= ~(1L << id);
+        }
         return this;
     }
 
+    /**
+     * Returns a (modifiable) view of the tags
+     */
+    public Set<String> getTags() {
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new KeysIterator<String>(TAGS) {
+                    @Override
+                    boolean isSet(int id) {
+                        return hasTag(id);
+                    }
+
+                    @Override
+                    String value(int id) {
+                        return TAGS.name(id);
+                    }
+
+                    @Override
+                    void unset(int id) {
+                        changing();
+                        tagBits[id >> 6] &= ~(1L << id);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (long word : tagBits) {
+                    size += Long.bitCount(word);
+                }
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object tag) {
+                return tag instanceof String && hasTag((String) tag);
+            }
+
+            @Override
+            public boolean add(String tag) {
+                boolean added = !hasTag(tag);
+                tag(tag);
+                return added;
+            }
+
+            @Override
+            public boolean remove(Object tag) {
+                boolean removed = contains(tag);
+                if (removed) {
+                    removeTag((String) tag);
+                }
+                return removed;
+            }
+        };
+    }
+
+    /**
+     * Replaces all tags
+     */
+    public void setTags(Set<String> tags) {
+        changing();
+        tagBits = NO_TAGS;
+        tags.forEach(this::tag);
+    }
+
+    /**
+     * Returns a (modifiable) view of the counters
+     */
+    public Map<String, Integer> getCounters() {
+        return new AbstractMap<String, Integer>() {
+            @Override
+            public Set<Entry<String, Integer>> entrySet() {
+                return new AbstractSet<Entry<String, Integer>>() {
+                    @Override
+                    public Iterator<Entry<String, Integer>> iterator() {
+                        return new KeysIterator<Entry<String, Integer>>(COUNTERS) {
+                            @Override
+                            boolean isSet(int id) {
+                                return counter(id) != 0;
+                            }
+
+                            @Override
+                            Entry<String, Integer> value(int id) {
+                                return new SimpleImmutableEntry<>(COUNTERS.name(id), counterValues[id]);
+                            }
+
+                            @Override
+                            void unset(int id) {
+                                changing();
+                                counterValues[id] = 0;
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        int size = 0;
+                        for (int value : counterValues) {
+                            if (value != 0) {
+                                size++;
+                            }
+                        }
+                        return size;
+                    }
+                };
+            }
+
+            @Override
+            public Integer get(Object name) {
+                int count = name instanceof String ? getCounter((String) name) : 0;
+                return count == 0 ? null : count;
+            }
+
+            @Override
+            public boolean containsKey(Object name) {
+                return get(name) != null;
+            }
+
+            @Override
+            public Integer put(String name, Integer count) {
+                Integer previous = get(name);
+                addCounter(name, count - getCounter(name));
+                return previous;
+            }
+
+            @Override
+            public Integer remove(Object name) {
+                Integer previous = get(name);
+                if (previous != null) {
+                    changing();
+                    counterValues[COUNTERS.idOf((String) name)] = 0;
+                }
+                return previous;
+            }
+        };
+    }
+
+    /**
+     * Replaces all counters
+     */
+    public void setCounters(Map<String, Integer> counters) {
+        changing();
+        counterValues = NO_COUNTERS;
+        counters.forEach(this::addCounter);
+    }
+
+    /**
+     * Iterates over set keys (in id order)
+     */
+    private abstract class KeysIterator<T> implements Iterator<T> {
+        final Keys keys;
+        int next = -1;
+        int last = -1;
+
+        KeysIterator(Keys keys) {
+            this.keys = keys;
+            advance();
+        }
+
+        abstract boolean isSet(int id);
+
+        abstract T value(int id);
+
+        abstract void unset(int id);
+
+        private void advance() {
+            int limit = Math.max(tagBits.length << 6, counterValues.length);
+            do {
+                next++;
+            } while (next < limit && !isSet(next));
+            if (next >= limit) {
+                next = -1;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        @Override
+        public T next() {
+            if (next < 0) {
+                throw new NoSuchElementException();
+            }
+            last = next;
+            advance();
+            return value(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            unset(last);
+            last = -1;
+        }
+    }
+
     /**
      * Sets the card tapped state
      */
     public Permanent setTapped(boolean tapped) {
+        if (owner != null && this.tapped != tapped) {
+            changing();
+            owner.tappedChanged(tapped);
+        }
         this.tapped = tapped;
         return this;
     }
@@ -139,29 +424,136 @@ public class Permanent implements Cloneable {
      * Sets the card summoning sickness
      */
     public Permanent setSickness(boolean sickness) {
-        this.sickness = sickness;
+        updateSickness(sickness);
         return this;
     }
 
+    private void updateSickness(Boolean sickness) {
+        if (!Objects.equals(this.sickness, sickness)) {
+            changing();
+        }
+        if (owner != null && (this.sickness == Boolean.TRUE) != (sickness == Boolean.TRUE)) {
+            owner.sicknessChanged(sickness == Boolean.TRUE);
+        }
+        this.sickness = sickness;
+    }
+
     void cleanup() {
+        changing();
         // tags
-        for (Iterator<String> it = tags.iterator(); it.hasNext(); ) {
-            if (isTemporary(it.next())) {
-                it.remove();
-            }
+        for (int word = 0; word < tagBits.length; word++) {
+            tagBits[word] &= ~TAGS.temporaryWord(word);
         }
         // counter
-        for (Iterator<Map.Entry<String, Integer>> it = counters.entrySet().iterator(); it.hasNext(); ) {
-            if (isTemporary(it.next().getKey())) {
-                it.remove();
+        for (int id = 0; id < counterValues.length; id++) {
+            if (counterValues[id] != 0 && COUNTERS.isTemporary(id)) {
+                counterValues[id] = 0;
             }
         }
         // unset summoning sickness
-        sickness = null;
+        updateSickness(null);
+    }
+
+    /**
+     * Notifies the owner before a change, and records the current state in its journal (only while exploring the
+     * future in place)
+     */
+    private void changing() {
+        if (owner == null) {
+            return;
+        }
+        owner.changed();
+        Journal journal = owner.journal;
+        if (journal != null && journal.isRecording()) {
+            boolean tapped = this.tapped;
+            Boolean sickness = this.sickness;
+            long[] tags = tagBits.length == 0 ? NO_TAGS : tagBits.clone();
+            int[] counters = counterValues.length == 0 ? NO_COUNTERS : counterValues.clone();
+            journal.record(() -> {
+                setTapped(tapped);
+                updateSickness(sickness);
+                tagBits = tags;
+                counterValues = counters;
+            });
+        }
+    }
+
+    /**
+     * Returns a hash of the permanent state (see {@link Zobrist})
+     */
+    long contentHash() {
+        long hash = Zobrist.key(0, ((long) cardId << 32) | typeBits)
+                + Zobrist.key(1, (tapped ? 1 : 0) | (sickness == null ? 2 : sickness ? 4 : 0));
+        for (int word = 0; word < tagBits.length; word++) {
+            if (tagBits[word] != 0) {
+                hash += Zobrist.key(2 + 2 * word, tagBits[word]);
+            }
+        }
+        for (int id = 0; id < counterValues.length; id++) {
+            if (counterValues[id] != 0) {
+                hash += Zobrist.key(3 + 2 * id, counterValues[id]);
+            }
+        }
+        return Zobrist.key(0, hash);
+    }
+
+    /**
+     * Compares the card, types, state, tags and counters (regardless of how tags and counters are stored)
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Permanent)) {
+            return false;
+        }
+        Permanent permanent = (Permanent) other;
+        return cardId == permanent.cardId
+                && typeBits == permanent.typeBits
+                && tapped == permanent.tapped
+                && Objects.equals(sickness, permanent.sickness)
+                && sameTags(tagBits, permanent.tagBits)
+                && sameCounters(counterValues, permanent.counterValues);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = Objects.hash(card, typeBits, tapped, sickness);
+        // ignore unset tags and counters
+        for (int word = 0; word < tagBits.length; word++) {
+            if (tagBits[word] != 0) {
+                hash = 31 * hash + word + Long.hashCode(tagBits[word]);
+            }
+        }
+        for (int id = 0; id < counterValues.length; id++) {
+            if (counterValues[id] != 0) {
+                hash = 31 * hash + id + counterValues[id];
+            }
+        }
+        return hash;
+    }
+
+    private static boolean sameTags(long[] tags, long[] other) {
+        for (int word = 0; word < Math.max(tags.length, other.length); word++) {
+            if ((word < tags.length ? tags[word] : 0L) != (word < other.length ? other[word] : 0L)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameCounters(int[] counters, int[] other) {
+        for (int id = 0; id < Math.max(counters.length, other.length); id++) {
+            if ((id < counters.length ? counters[id] : 0) != (id < other.length ? other[id] : 0)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     boolean isTemporary(String name) {
-        return name.startsWith("*");
+        return Keys.isTemporary(name);
     }
 
     /*
@@ -180,6 +572,8 @@ public class Permanent implements Cloneable {
         }
         sb.append(card);
         boolean first = true;
+        Set<String> tags = getTags();
+        Map<String, Integer> counters = getCounters();
         if (!tags.isEmpty() || !counters.isEmpty()) {
             sb.append(" <");
             for (String tag : tags) {
@@ -217,14 +611,16 @@ public class Permanent implements Cloneable {
     }
 
     public static Predicate<Permanent> withName(String... names) {
-        return card -> {
-            for (String name : names) {
-                if (name.equals(card.card)) {
-                    return true;
-                }
-            }
-            return false;
-        };
+        return withId(CardRegistry.register(names));
+    }
+
+    /**
+     * Filter that selects cards with one of the given ids
+     *
+     * @see CardRegistry
+     */
+    public static Predicate<Permanent> withId(int... ids) {
+        return PermanentFilter.withIds(ids);
     }
 
     /**
@@ -235,7 +631,7 @@ public class Permanent implements Cloneable {
     }
 
     public static Predicate<Permanent> withType(Game.CardType type) {
-        return card -> card.hasType(type);
+        return PermanentFilter.withType(type);
     }
 
     public static Predicate<Permanent> withTag(String name) {
@@ -247,11 +643,11 @@ public class Permanent implements Cloneable {
     }
 
     public static Predicate<Permanent> withSickness() {
-        return card -> card.sickness == Boolean.TRUE;
+        return PermanentFilter.sick(true);
     }
 
     public static Predicate<Permanent> withoutSickness() {
-        return card -> card.sickness != Boolean.TRUE;
+        return PermanentFilter.sick(false);
     }
 
     public static Predicate<Permanent> notWithTag(String name) {
@@ -259,7 +655,7 @@ public class Permanent implements Cloneable {
     }
 
     public static Predicate<Permanent> tapped(boolean tapped) {
-        return card -> card.isTapped() == tapped;
+        return PermanentFilter.tapped(tapped);
     }
 
     public static Predicate<Permanent> tapped() {
@@ -0,0 +1,88 @@
+package org.mtgpeasant.perfectdeck.goldfish;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * A {@link Permanent} predicate that carries hints about the permanents it may select
+ * <p>
+ * Hints let {@link Permanents} only test the permanents of its matching index (by card id or by type) instead of
+ * scanning the whole list. They are combined by {@link #and(Predicate)}; any other composition drops them.
+ */
+final class PermanentFilter implements Predicate<Permanent> {
+    /**
+     * distinct card ids of selected permanents (or {@code null} if unknown)
+     */
+    final int[] ids;
+    /**
+     * type all selected permanents have (or {@code null} if unknown)
+     */
+    final Game.CardType type;
+    /**
+     * tapped state of selected permanents (or {@code null} if unknown)
+     */
+    final Boolean tapped;
+    /**
+     * whether selected permanents all have summoning sickness (or {@code null} if unknown)
+     */
+    final Boolean sick;
+    private final Predicate<Permanent> test;
+
+    private PermanentFilter(int[] ids, Game.CardType type, Boolean tapped, Boolean sick, Predicate<Permanent> test) {
+        this.ids = ids;
+        this.type = type;
+        this.tapped = tapped;
+        this.sick = sick;
+        this.test = test;
+    }
+
+    static PermanentFilter withIds(int... ids) {
+        int[] distinct = Arrays.stream(ids).distinct().toArray();
+        if (distinct.length == 1) {
+            int id = distinct[0];
+            return new PermanentFilter(distinct, null, null, null, card -> card.cardId == id);
+        }
+        return new PermanentFilter(distinct, null, null, null, card -> {
+            for (int id : distinct) {
+                if (id == card.cardId) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    static PermanentFilter withType(Game.CardType type) {
+        return new PermanentFilter(null, type, null, null, card -> card.hasType(type));
+    }
+
+    static PermanentFilter tapped(boolean tapped) {
+        return new PermanentFilter(null, null, tapped, null, card -> card.isTapped() == tapped);
+    }
+
+    static PermanentFilter sick(boolean sick) {
+        return sick ?
+                new PermanentFilter(null, null, null, true, card -> card.sickness == Boolean.TRUE)
+                : new PermanentFilter(null, null, null, false, card -> card.sickness != Boolean.TRUE);
+    }
+
+    @Override
+    public boolean test(Permanent permanent) {
+        return test.test(permanent);
+    }
+
+    @Override
+    public PermanentFilter and(Predicate<? super Permanent> other) {
+        Predicate<Permanent> both = test.and(other);
+        if (other instanceof PermanentFilter) {
+            PermanentFilter filter = (PermanentFilter) other;
+            return new PermanentFilter(
+                    ids == null || (filter.ids != null && filter.ids.length < ids.length) ? filter.ids : ids,
+                    type == null ? filter.type : type,
+                    tapped == null ? filter.tapped : tapped,
+                    sick == null ? filter.sick : sick,
+                    both);
+        }
+        return new PermanentFilter(ids, type, tapped, sick, both);
+    }
+}
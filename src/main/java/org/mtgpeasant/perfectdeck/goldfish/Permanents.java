@@ -1,12 +1,37 @@
 package org.mtgpeasant.perfectdeck.goldfish;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import org.mtgpeasant.perfectdeck.common.utils.Zobrist;
+
+import java.util.*;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
+/**
+ * A list of permanents
+ * <p>
+ * Permanents are indexed by card id and by type, and the number of tapped and sick permanents is tracked. Queries with
+ * filters built from {@link Permanent} predicates (such as {@code withName(SWAMP).and(untapped())}) only test the
+ * permanents of the most selective index.
+ * <p>
+ * When attached to a game {@link Journal journal}, changes to the list and to its permanents are recorded to be undone.
+ */
 public class Permanents extends ArrayList<Permanent> implements Cloneable {
+    private static final Game.CardType[] TYPES = Game.CardType.values();
+
+    private List<Permanent>[] byId = newIndex(16);
+    private List<Permanent>[] byType = newIndex(TYPES.length);
+    private int tappedCount = 0;
+    private int sickCount = 0;
+    // permanents order: added on top get decreasing values, added at the bottom increasing ones
+    private long topOrder = 0;
+    private long bottomOrder = 0;
+    // undo log (set by the game)
+    transient Journal journal;
+    // number of changes (see getVersion())
+    private long version = 0;
+    // cached content hash, and version it was computed at
+    private long hash;
+    private long hashVersion = -1;
+
     /**
      * Finds first permanent matching the given filter
      *
@@ -14,7 +39,26 @@ public class Permanents extends ArrayList<Permanent> implements Cloneable {
      * @return matching permanent
      */
     public Optional<Permanent> findFirst(Predicate<Permanent> filter) {
-        return stream().filter(filter).findFirst();
+        Permanent first = null;
+        if (filter instanceof PermanentFilter && ((PermanentFilter) filter).ids != null && ((PermanentFilter) filter).ids.length > 1) {
+            // several indexes: find first of each
+            for (int id : ((PermanentFilter) filter).ids) {
+                for (Permanent permanent : byId(id)) {
+                    if ((first == null || permanent.order < first.order) && filter.test(permanent)) {
+                        first = permanent;
+                        break;
+                    }
+                }
+            }
+        } else {
+            for (Permanent permanent : candidates(filter)) {
+                if (filter.test(permanent)) {
+                    first = permanent;
+                    break;
+                }
+            }
+        }
+        return Optional.ofNullable(first);
     }
 
     /**
@@ -24,7 +68,25 @@ public class Permanents extends ArrayList<Permanent> implements Cloneable {
      * @return matching permanents
      */
     public List<Permanent> find(Predicate<Permanent> filter) {
-        return stream().filter(filter).collect(Collectors.toList());
+        List<Permanent> found = new ArrayList<>();
+        if (filter instanceof PermanentFilter && ((PermanentFilter) filter).ids != null && ((PermanentFilter) filter).ids.length > 1) {
+            // several indexes: merge
+            for (int id : ((PermanentFilter) filter).ids) {
+                for (Permanent permanent : byId(id)) {
+                    if (filter.test(permanent)) {
+                        found.add(permanent);
+                    }
+                }
+            }
+            found.sort(Comparator.comparingLong(permanent -> permanent.order));
+        } else {
+            for (Permanent permanent : candidates(filter)) {
+                if (filter.test(permanent)) {
+                    found.add(permanent);
+                }
+            }
+        }
+        return found;
     }
 
     /**
@@ -34,18 +96,376 @@ public class Permanents extends ArrayList<Permanent> implements Cloneable {
      * @return matching permanents count
      */
     public int count(Predicate<Permanent> filter) {
-        return (int) stream().filter(filter).count();
+        int count = 0;
+        if (filter instanceof PermanentFilter && ((PermanentFilter) filter).ids != null && ((PermanentFilter) filter).ids.length > 1) {
+            for (int id : ((PermanentFilter) filter).ids) {
+                for (Permanent permanent : byId(id)) {
+                    if (filter.test(permanent)) {
+                        count++;
+                    }
+                }
+            }
+        } else {
+            for (Permanent permanent : candidates(filter)) {
+                if (filter.test(permanent)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the smallest list of permanents that contains all permanents matching the given filter
+     */
+    private List<Permanent> candidates(Predicate<Permanent> filter) {
+        if (!(filter instanceof PermanentFilter)) {
+            return this;
+        }
+        PermanentFilter hints = (PermanentFilter) filter;
+        if ((hints.tapped == Boolean.TRUE && tappedCount == 0)
+                || (hints.tapped == Boolean.FALSE && tappedCount == size())
+                || (hints.sick == Boolean.TRUE && sickCount == 0)
+                || (hints.sick == Boolean.FALSE && sickCount == size())) {
+            return Collections.emptyList();
+        }
+        List<Permanent> candidates = this;
+        if (hints.ids != null) {
+            candidates = hints.ids.length == 0 ? Collections.emptyList() : byId(hints.ids[0]);
+        }
+        if (hints.type != null && byType[hints.type.ordinal()] != null && byType[hints.type.ordinal()].size() < candidates.size()) {
+            candidates = byType[hints.type.ordinal()];
+        }
+        return candidates;
+    }
+
+    private List<Permanent> byId(int id) {
+        List<Permanent> permanents = id < byId.length ? byId[id] : null;
+        return permanents == null ? Collections.emptyList() : permanents;
+    }
+
+    // =================================================================================================================
+    // === index maintenance
+    // =================================================================================================================
+
+    /**
+     * Returns a counter that is incremented by each change of the list or of its permanents
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    void changed() {
+        version++;
+    }
+
+    /**
+     * Returns a hash of the permanents and their state, regardless of their order (see {@link Zobrist})
+     * <p>
+     * Cached until the list or one of its permanents changes.
+     */
+    public long contentHash() {
+        if (hashVersion != version) {
+            long sum = 0L;
+            for (Permanent permanent : this) {
+                sum += permanent.contentHash();
+            }
+            hash = sum;
+            hashVersion = version;
+        }
+        return hash;
+    }
+
+    void tappedChanged(boolean tapped) {
+        tappedCount += tapped ? 1 : -1;
+    }
+
+    void sicknessChanged(boolean sick) {
+        sickCount += sick ? 1 : -1;
+    }
+
+    private void index(Permanent permanent, boolean onTop) {
+        index(permanent, onTop ? --topOrder : bottomOrder++);
+    }
+
+    private void index(Permanent permanent, long order) {
+        permanent.owner = this;
+        permanent.order = order;
+        if (permanent.cardId >= byId.length) {
+            byId = Arrays.copyOf(byId, Math.max(permanent.cardId + 1, byId.length * 2));
+        }
+        addToIndex(byId, permanent.cardId, permanent);
+        for (int bits = permanent.typeBits; bits != 0; bits &= bits - 1) {
+            addToIndex(byType, Integer.numberOfTrailingZeros(bits), permanent);
+        }
+        if (permanent.isTapped()) {
+            tappedCount++;
+        }
+        if (permanent.getSickness() == Boolean.TRUE) {
+            sickCount++;
+        }
+    }
+
+    private void unindex(Permanent permanent) {
+        if (permanent.owner == this) {
+            permanent.owner = null;
+        }
+        removeFromIndex(byId[permanent.cardId], permanent);
+        for (int bits = permanent.typeBits; bits != 0; bits &= bits - 1) {
+            removeFromIndex(byType[Integer.numberOfTrailingZeros(bits)], permanent);
+        }
+        if (permanent.isTapped()) {
+            tappedCount--;
+        }
+        if (permanent.getSickness() == Boolean.TRUE) {
+            sickCount--;
+        }
+    }
+
+    private static void addToIndex(List<Permanent>[] index, int key, Permanent permanent) {
+        if (index[key] == null) {
+            index[key] = new ArrayList<>(4);
+        }
+        List<Permanent> permanents = index[key];
+        int position = permanents.size();
+        while (position > 0 && permanents.get(position - 1).order > permanent.order) {
+            position--;
+        }
+        permanents.add(position, permanent);
+    }
+
+    private static void removeFromIndex(List<Permanent> permanents, Permanent permanent) {
+        for (int i = 0; i < permanents.size(); i++) {
+            if (permanents.get(i) == permanent) {
+                permanents.remove(i);
+                return;
+            }
+        }
     }
 
     /**
-     * Deep cloning
+     * Rebuilds all indexes (after a bulk or positional change)
+     */
+    private void reindex() {
+        byId = newIndex(byId.length);
+        byType = newIndex(TYPES.length);
+        tappedCount = 0;
+        sickCount = 0;
+        topOrder = 0;
+        bottomOrder = 0;
+        for (int i = 0; i < size(); i++) {
+            index(super.get(i), false);
+        }
+    }
+
+    private void detachAll() {
+        for (int i = 0; i < size(); i++) {
+            Permanent permanent = super.get(i);
+            if (permanent.owner == this) {
+                permanent.owner = null;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Permanent>[] newIndex(int size) {
+        return (List<Permanent>[]) new List[size];
+    }
+
+    @Override
+    public boolean add(Permanent permanent) {
+        journalAdd(size(), permanent);
+        super.add(permanent);
+        index(permanent, false);
+        return true;
+    }
+
+    @Override
+    public void add(int index, Permanent permanent) {
+        if (index == 0 || index == size()) {
+            journalAdd(index, permanent);
+        } else {
+            journalAll();
+        }
+        super.add(index, permanent);
+        if (index == 0) {
+            index(permanent, true);
+        } else if (index == size() - 1) {
+            index(permanent, false);
+        } else {
+            reindex();
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Permanent> permanents) {
+        for (Permanent permanent : permanents) {
+            add(permanent);
+        }
+        return !permanents.isEmpty();
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Permanent> permanents) {
+        journalAll();
+        detachAll();
+        boolean modified = super.addAll(index, permanents);
+        reindex();
+        return modified;
+    }
+
+    @Override
+    public Permanent remove(int index) {
+        Permanent removed = super.get(index);
+        version++;
+        if (journal != null && journal.isRecording()) {
+            long order = removed.order;
+            journal.record(() -> {
+                version++;
+                super.add(index, removed);
+                index(removed, order);
+            });
+        }
+        super.remove(index);
+        unindex(removed);
+        return removed;
+    }
+
+    @Override
+    public boolean remove(Object permanent) {
+        int index = indexOf(permanent);
+        if (index < 0) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public Permanent set(int index, Permanent permanent) {
+        journalAll();
+        detachAll();
+        Permanent replaced = super.set(index, permanent);
+        reindex();
+        return replaced;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> permanents) {
+        journalAll();
+        detachAll();
+        boolean modified = super.removeAll(permanents);
+        reindex();
+        return modified;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> permanents) {
+        journalAll();
+        detachAll();
+        boolean modified = super.retainAll(permanents);
+        reindex();
+        return modified;
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super Permanent> filter) {
+        journalAll();
+        detachAll();
+        boolean modified = super.removeIf(filter);
+        reindex();
+        return modified;
+    }
+
+    @Override
+    public void clear() {
+        journalAll();
+        detachAll();
+        super.clear();
+        // keep index lists (reused when a game is reset)
+        for (List<Permanent> permanents : byId) {
+            if (permanents != null) {
+                permanents.clear();
+            }
+        }
+        for (List<Permanent> permanents : byType) {
+            if (permanents != null) {
+                permanents.clear();
+            }
+        }
+        tappedCount = 0;
+        sickCount = 0;
+        topOrder = 0;
+        bottomOrder = 0;
+    }
+
+    // =================================================================================================================
+    // === undo log
+    // =================================================================================================================
+
+    /**
+     * Records how to undo adding the given permanent at the given position
+     */
+    private void journalAdd(int index, Permanent permanent) {
+        version++;
+        if (journal != null && journal.isRecording()) {
+            long topOrder = this.topOrder;
+            long bottomOrder = this.bottomOrder;
+            journal.record(() -> {
+                version++;
+                super.remove(index);
+                unindex(permanent);
+                this.topOrder = topOrder;
+                this.bottomOrder = bottomOrder;
+            });
+        }
+    }
+
+    /**
+     * Records how to undo any change (used before bulk or positional changes)
+     */
+    private void journalAll() {
+        version++;
+        if (journal != null && journal.isRecording()) {
+            Permanent[] permanents = super.toArray(new Permanent[0]);
+            journal.record(() -> {
+                version++;
+                detachAll();
+                super.clear();
+                super.addAll(Arrays.asList(permanents));
+                reindex();
+            });
+        }
+    }
+
+    // =================================================================================================================
+    // === cloning
+    // =================================================================================================================
+
+    /**
+     * Deep cloning: the clone owns a copy of each permanent
      */
     @Override
     public Permanents clone() {
         Permanents permanents = (Permanents) super.clone();
+        permanents.journal = null;
+        permanents.copyPermanents();
+        return permanents;
+    }
+
+    /**
+     * Replaces all permanents with copies, and rebuilds the indexes (keeping the permanents order)
+     */
+    private void copyPermanents() {
+        byId = newIndex(byId.length);
+        byType = newIndex(TYPES.length);
+        tappedCount = 0;
+        sickCount = 0;
         for (int i = 0; i < size(); i++) {
-            permanents.set(i, permanents.get(i).clone());
+            Permanent permanent = super.get(i);
+            Permanent copy = permanent.clone();
+            super.set(i, copy);
+            index(copy, permanent.order);
         }
-        return permanents;
     }
 }
@@ -0,0 +1,51 @@
+package org.mtgpeasant.perfectdeck.goldfish;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Creates new {@link DeckPilot} instances
+ * <p>
+ * Factories are resolved once per simulation and then invoked for every simulated game.
+ */
+@FunctionalInterface
+public interface PilotFactory {
+    /**
+     * Instantiates a new deck pilot
+     *
+     * @param game the game the pilot will play
+     * @return new deck pilot
+     */
+    DeckPilot create(Game game);
+
+    /**
+     * Returns a factory creating pilots of the given type
+     * <p>
+     * The pilot class must declare a constructor taking its game type as single argument. It is bound with
+     * {@link LambdaMetafactory}, so that creating a pilot is a direct constructor call, as a {@code new} expression.
+     *
+     * @param pilotClass deck pilot class
+     * @throws IllegalArgumentException if the pilot class doesn't declare the expected constructor
+     */
+    static PilotFactory of(Class<? extends DeckPilot> pilotClass) {
+        Class<? extends Game> gameClass = GameFactory.gameClass(pilotClass);
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(pilotClass, MethodHandles.lookup());
+            MethodHandle constructor = lookup.findConstructor(pilotClass, MethodType.methodType(void.class, gameClass));
+            return (PilotFactory) LambdaMetafactory.metafactory(
+                    lookup,
+                    "create",
+                    MethodType.methodType(PilotFactory.class),
+                    MethodType.methodType(DeckPilot.class, Game.class),
+                    constructor,
+                    constructor.type()
+            ).getTarget().invokeExact();
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalArgumentException("Couldn't instantiate pilot of type " + pilotClass.getSimpleName(), t);
+        }
+    }
+}
@@ -5,10 +5,9 @@ import lombok.Builder;
 import lombok.Singular;
 import lombok.Value;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
+import org.mtgpeasant.perfectdeck.common.utils.Zobrist;
+
+import java.util.*;
 import java.util.stream.Collectors;
 
 public class Seer {
@@ -16,6 +15,34 @@ public class Seer {
         boolean canPlay(String card);
 
         boolean play(String card);
+
+        /**
+         * Returns an upper bound of the damage that can still be dealt to the opponent this turn, from the current
+         * hand, board and available mana
+         * <p>
+         * Used to abandon routes that can't be lethal: must never underestimate. Default implementation returns
+         * {@link Integer#MAX_VALUE} (no bound)
+         */
+        default int maxDamage() {
+            return Integer.MAX_VALUE;
+        }
+
+        /**
+         * Same as {@link #maxDamage()} for poison counters
+         */
+        default int maxPoison() {
+            return Integer.MAX_VALUE;
+        }
+
+        /**
+         * Determines whether the two cards commute: playing one doesn't change whether the other can be played, nor
+         * what it does (both orders lead to the same state)
+         * <p>
+         * Commuting cards are only tried in one order. Default implementation returns {@code false}
+         */
+        default boolean commute(String card, String other) {
+            return false;
+        }
     }
 
     @Value
@@ -62,6 +89,16 @@ public class Seer {
 
     /**
      * Brute force exploration of all spells sequence that allow winning this turn
+     * <p>
+     * The exploration runs in place on a single fork of the game: each spell is played, explored then undone (see
+     * {@link Game#checkpoint()}), the pilot own state being restored with {@link DeckPilot#restoreState(Object)}.
+     * <p>
+     * Playing the same spells in different orders often leads to the same state: states already proven not to lead to
+     * victory are recorded by {@link Game#getStateHash() hash} (with the pilot own state and the last played spell) and
+     * not explored again.
+     * Routes that can't be lethal any more (see {@link SpellsPlayer#maxDamage()}) are abandoned, and the search is
+     * skipped altogether if the current turn can't be. Spells that {@link SpellsPlayer#commute(String, String) commute}
+     * are only played in the order of the given cards.
      *
      * @param pilot game pilot
      * @param cards cards/spells allowing winning
@@ -69,16 +106,56 @@ public class Seer {
      */
     public static Optional<VictoryRoute> findRouteToVictory(DeckPilot pilot, String... cards) {
         Preconditions.checkArgument(pilot instanceof SpellsPlayer, "DeckPilot has to implement " + SpellsPlayer.class.getSimpleName());
-        return Optional.ofNullable(findRouteToVictory(pilot.fork(), new ArrayList<>(), cards));
+        if (!mayWin(pilot)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(findRouteToVictory(pilot.fork(), new HashSet<>(), new ArrayList<>(), cards));
     }
 
     /**
      * @param pilot        game pilot
+     * @param deadEnds     hashes of the states (with the last played spell) already proven not to lead to victory
      * @param playedSpells spells played so far in this route
      * @param cards        cards/spells allowing winning
      * @return winning route if any or {@code null}
      */
-    private static VictoryRoute findRouteToVictory(DeckPilot pilot, List<String> playedSpells, String... cards) {
+    private static VictoryRoute findRouteToVictory(DeckPilot pilot, Set<Long> deadEnds, List<String> playedSpells, String... cards) {
+        // the last played spell is part of the state: it decides which commuting spells are skipped
+        String last = playedSpells.isEmpty() ? null : playedSpells.get(playedSpells.size() - 1);
+        long state = pilot.game.getStateHash() + Zobrist.key(-1, Objects.hashCode(pilot.saveState())) + Zobrist.key(-2, Objects.hashCode(last));
+        if (deadEnds.contains(state)) {
+            return null;
+        }
+        VictoryRoute route = mayWin(pilot) ? explore(pilot, deadEnds, playedSpells, cards) : null;
+        if (route == null) {
+            deadEnds.add(state);
+        }
+        return route;
+    }
+
+    /**
+     * Determines whether the opponent may still be killed this turn (see {@link SpellsPlayer#maxDamage()})
+     */
+    private static boolean mayWin(DeckPilot pilot) {
+        SpellsPlayer player = (SpellsPlayer) pilot;
+        return player.maxDamage() >= pilot.game.getOpponentLife()
+                || player.maxPoison() >= 10 - pilot.game.getOpponentPoisonCounters();
+    }
+
+    /**
+     * Determines whether the given card may be played after the last played one: if they commute, only in the order of
+     * the given cards
+     */
+    private static boolean inCanonicalOrder(SpellsPlayer player, List<String> playedSpells, String card, String... cards) {
+        if (playedSpells.isEmpty()) {
+            return true;
+        }
+        String last = playedSpells.get(playedSpells.size() - 1);
+        List<String> order = Arrays.asList(cards);
+        return !player.commute(last, card) || order.indexOf(last) <= order.indexOf(card);
+    }
+
+    private static VictoryRoute explore(DeckPilot pilot, Set<Long> deadEnds, List<String> playedSpells, String... cards) {
         // filter playable cards
         List<String> playableCards = Arrays.stream(cards)
                 .filter(card -> ((SpellsPlayer) pilot).canPlay(card))
@@ -101,7 +178,7 @@ public class Seer {
                 // else simulate second main phase
                 pilot.game.startPhase(Game.Phase.second_main);
 
-                VictoryRoute secondMainPhaseRoute = findRouteToVictory(pilot, new ArrayList<>(), cards);
+                VictoryRoute secondMainPhaseRoute = findRouteToVictory(pilot, deadEnds, new ArrayList<>(), cards);
                 if (secondMainPhaseRoute != null) {
                     return VictoryRoute.builder()
                             .firstMainPhaseSpells(playedSpells)
@@ -122,15 +199,27 @@ public class Seer {
             }
         } else {
             // try each playable card then recurse
-            boolean hasToBeForked = playableCards.size() > 1;
+            boolean hasToBeUndone = playableCards.size() > 1;
             for (String card : playableCards) {
-                DeckPilot sub = hasToBeForked ? pilot.fork() : pilot;
-                List<String> subPlayed = hasToBeForked ? new ArrayList<>(playedSpells) : playedSpells;
+                if (!inCanonicalOrder((SpellsPlayer) pilot, playedSpells, card, cards)) {
+                    // the other order is explored instead
+                    continue;
+                }
+                int mark = hasToBeUndone ? pilot.game.checkpoint() : 0;
+                Object pilotState = hasToBeUndone ? pilot.saveState() : null;
+                List<String> subPlayed = hasToBeUndone ? new ArrayList<>(playedSpells) : playedSpells;
                 subPlayed.add(card);
-                ((SpellsPlayer) sub).play(card);
-                VictoryRoute victoryRoute = findRouteToVictory(sub, subPlayed, cards);
-                if (victoryRoute != null) {
-                    return victoryRoute;
+                try {
+                    ((SpellsPlayer) pilot).play(card);
+                    VictoryRoute victoryRoute = findRouteToVictory(pilot, deadEnds, subPlayed, cards);
+                    if (victoryRoute != null) {
+                        return victoryRoute;
+                    }
+                } finally {
+                    if (hasToBeUndone) {
+                        pilot.game.rollback(mark);
+                        pilot.restoreState(pilotState);
+                    }
                 }
             }
             return null;
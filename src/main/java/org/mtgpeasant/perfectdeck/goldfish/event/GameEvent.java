@@ -1,15 +1,22 @@
 package org.mtgpeasant.perfectdeck.goldfish.event;
 
-import lombok.Value;
-import lombok.experimental.NonFinal;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import org.mtgpeasant.perfectdeck.common.mana.Mana;
 import org.mtgpeasant.perfectdeck.goldfish.Game;
 import org.mtgpeasant.perfectdeck.goldfish.Permanent;
 
 import java.util.Set;
 
-@Value
-@NonFinal
+/**
+ * An event triggered by the game
+ * <p>
+ * Events are mutable: the game reuses its event instances (see {@link GameListener#onEvent(GameEvent)}).
+ */
+@Getter
+@ToString
 public class GameEvent {
     public enum Type {
         cast,
@@ -20,17 +27,22 @@ public class GameEvent {
         destroy
     }
 
-    private final Type type;
+    @Setter(AccessLevel.PROTECTED)
+    private Type type;
 
-    @Value
-    @NonFinal
+    public GameEvent(Type type) {
+        this.type = type;
+    }
+
+    @Getter
+    @ToString(callSuper = true)
     public static class SpellEvent extends GameEvent {
 
-        private final String card;
+        private String card;
 
-        private final Mana cost;
+        private Mana cost;
 
-        private final Set<Game.CardType> types;
+        private Set<Game.CardType> types;
 
         public SpellEvent(Type type, String card, Mana cost, Set<Game.CardType> types) {
             super(type);
@@ -39,6 +51,17 @@ public class GameEvent {
             this.types = types;
         }
 
+        /**
+         * Reuses this instance for another event
+         */
+        public SpellEvent reuse(Type type, String card, Mana cost, Set<Game.CardType> types) {
+            setType(type);
+            this.card = card;
+            this.cost = cost;
+            this.types = types;
+            return this;
+        }
+
         /**
          * Determines whether this card has the given type
          */
@@ -47,17 +70,27 @@ public class GameEvent {
         }
     }
 
-    @Value
-    @NonFinal
+    @Getter
+    @ToString(callSuper = true)
     public static class CardEvent extends GameEvent {
 
-        private final Object permanentOrCard;
+        @Setter(AccessLevel.PROTECTED)
+        private Object permanentOrCard;
 
         public CardEvent(Type type, Object permanentOrCard) {
             super(type);
             this.permanentOrCard = permanentOrCard;
         }
 
+        /**
+         * Reuses this instance for another event
+         */
+        public CardEvent reuse(Type type, Object permanentOrCard) {
+            setType(type);
+            this.permanentOrCard = permanentOrCard;
+            return this;
+        }
+
         public String getCardName() {
             return permanentOrCard instanceof String ? (String) permanentOrCard : ((Permanent) permanentOrCard).getCard();
         }
@@ -67,15 +100,25 @@ public class GameEvent {
         }
     }
 
-    @Value
-    @NonFinal
+    @Getter
+    @ToString(callSuper = true)
     public static class CardMovedEvent extends CardEvent {
 
-        private final Game.Area area;
+        private Game.Area area;
 
         public CardMovedEvent(Type type, Game.Area area, Object permanentOrCard) {
             super(type, permanentOrCard);
             this.area = area;
         }
+
+        /**
+         * Reuses this instance for another event
+         */
+        public CardMovedEvent reuse(Type type, Game.Area area, Object permanentOrCard) {
+            setType(type);
+            setPermanentOrCard(permanentOrCard);
+            this.area = area;
+            return this;
+        }
     }
 }
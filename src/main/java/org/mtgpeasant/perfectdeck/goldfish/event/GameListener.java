@@ -1,5 +1,38 @@
 package org.mtgpeasant.perfectdeck.goldfish.event;
 
+import org.mtgpeasant.perfectdeck.goldfish.Game;
+
+import java.util.EnumSet;
+import java.util.Set;
+
 public interface GameListener {
+    /**
+     * Receives a game event
+     * <p>
+     * <strong>Important</strong>: the game reuses its event instances, that are refilled for each dispatch. An event
+     * is only valid during this call: copy what you need instead of keeping the event.
+     *
+     * @param event game event
+     */
     void onEvent(GameEvent event);
+
+    /**
+     * Event types this listener subscribes to
+     * <p>
+     * Events nobody subscribed to are not even built: override to only receive the events you need
+     * <p>
+     * Default implementation subscribes to all types
+     */
+    default Set<GameEvent.Type> getEventTypes() {
+        return EnumSet.allOf(GameEvent.Type.class);
+    }
+
+    /**
+     * Areas of {@link GameEvent.CardMovedEvent card moved events} this listener subscribes to
+     * <p>
+     * Default implementation subscribes to all areas
+     */
+    default Set<Game.Area> getEventAreas() {
+        return EnumSet.allOf(Game.Area.class);
+    }
 }
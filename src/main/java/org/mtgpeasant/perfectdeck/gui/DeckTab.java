@@ -3,6 +3,8 @@ package org.mtgpeasant.perfectdeck.gui;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 import org.mtgpeasant.perfectdeck.common.cards.Deck;
+import org.mtgpeasant.perfectdeck.common.utils.CancellationToken;
+import org.mtgpeasant.perfectdeck.common.utils.SimulationListener;
 import org.mtgpeasant.perfectdeck.goldfish.DeckPilot;
 import org.mtgpeasant.perfectdeck.goldfish.GoldfishSimulator;
 
@@ -12,6 +14,7 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.*;
 import java.nio.charset.Charset;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Deck list editor + bottom bar (summary)
@@ -45,6 +48,10 @@ public class DeckTab extends JPanel {
     private final GuiOptionsHandler handler;
     private final DeckEditor deckEditor;
     private final GameStatsPanel statsPanel;
+    private JButton goldfishBut;
+    private JProgressBar progressBar;
+    private JButton cancelBut;
+    private CancellationToken cancellation;
 
     public DeckTab(GuiOptionsHandler handler) {
         this.handler = handler;
@@ -173,12 +180,24 @@ public class DeckTab extends JPanel {
         games2.setForeground(UI.RED);
         panel.add(games2);
 
-        JButton goldfishBut = new JButton("Go !");
+        goldfishBut = new JButton("Go !");
         goldfishBut.setToolTipText("Starts a goldfish simulation and computes statistics");
         goldfishBut.addActionListener(e -> onComputeStats(Integer.parseInt(iterationsInput.getText())));
         goldfishBut.setBackground(UI.RED);
         goldfishBut.setForeground(Color.WHITE);
         panel.add(goldfishBut);
+
+        // progress (only visible while computing stats)
+        progressBar = new JProgressBar();
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        panel.add(progressBar);
+
+        cancelBut = new JButton("cancel");
+        cancelBut.setToolTipText("Stops the simulation (statistics are computed on games already simulated)");
+        cancelBut.addActionListener(e -> onCancel());
+        cancelBut.setVisible(false);
+        panel.add(cancelBut);
         return panel;
     }
 
@@ -273,25 +292,79 @@ public class DeckTab extends JPanel {
             return;
         }
 
+        Deck deck;
         try {
-            Deck deck = Deck.parse(new StringReader(deckEditor.getText()));
-
-            // simulate games
-            GoldfishSimulator simulator = GoldfishSimulator.builder()
-                    .iterations(iterations)
-                    .pilotClass(pilotClass)
-                    .start(GoldfishSimulator.Start.BOTH)
-                    .maxTurns(10) // TODO: configurable ?
-                    .build();
-
-            // TODO: progress bar
-            GoldfishSimulator.DeckStats stats = simulator.simulate(deck);
-            statsPanel.refresh(stats);
-            statsPanel.setVisible(true);
+            deck = Deck.parse(new StringReader(deckEditor.getText()));
         } catch (Exception e) {
-//            StringWriter stack = new StringWriter();
-//            e.printStackTrace(new PrintWriter(stack));
             JOptionPane.showMessageDialog(this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        // simulate games (in background)
+        cancellation = new CancellationToken();
+        SwingWorker<GoldfishSimulator.DeckStats, GoldfishSimulator.DeckStats> worker = new SwingWorker<GoldfishSimulator.DeckStats, GoldfishSimulator.DeckStats>() {
+            @Override
+            protected GoldfishSimulator.DeckStats doInBackground() {
+                GoldfishSimulator simulator = GoldfishSimulator.builder()
+                        .iterations(iterations)
+                        .pilotClass(pilotClass)
+                        .start(GoldfishSimulator.Start.BOTH)
+                        .maxTurns(10) // TODO: configurable ?
+                        .listener(progress -> SwingUtilities.invokeLater(() -> showProgress(progress)))
+                        .cancellation(cancellation)
+                        .build();
+                // refresh stats live
+                return simulator.simulate(deck, this::publish);
+            }
+
+            @Override
+            protected void process(java.util.List<GoldfishSimulator.DeckStats> snapshots) {
+                if (isDone()) {
+                    // late snapshot: done() shows the final stats
+                    return;
+                }
+                statsPanel.refresh(snapshots.get(snapshots.size() - 1));
+                statsPanel.setVisible(true);
+            }
+
+            @Override
+            protected void done() {
+                setRunning(false, iterations);
+                try {
+                    GoldfishSimulator.DeckStats stats = get();
+                    if (stats.getIterations() > 0) {
+                        statsPanel.refresh(stats);
+                        statsPanel.setVisible(true);
+                    }
+                } catch (ExecutionException e) {
+                    JOptionPane.showMessageDialog(DeckTab.this, e.getCause().getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        setRunning(true, iterations);
+        worker.execute();
+    }
+
+    private void showProgress(SimulationListener.Progress progress) {
+        progressBar.setValue((int) progress.getCompleted());
+        progressBar.setString(String.format("%d/%d games (%.0f games/s)", progress.getCompleted(), progress.getTotal(), progress.getIterationsPerSecond()));
+    }
+
+    private void onCancel() {
+        if (cancellation != null) {
+            cancellation.cancel();
         }
     }
+
+    private void setRunning(boolean running, int iterations) {
+        goldfishBut.setEnabled(!running);
+        progressBar.setMaximum(iterations);
+        progressBar.setValue(0);
+        progressBar.setString("starting...");
+        progressBar.setVisible(running);
+        cancelBut.setVisible(running);
+        revalidate();
+    }
 }
@@ -5,12 +5,18 @@ import lombok.Getter;
 import lombok.Value;
 import org.mtgpeasant.perfectdeck.common.cards.Cards;
 import org.mtgpeasant.perfectdeck.common.cards.Deck;
-import org.mtgpeasant.perfectdeck.goldfish.GoldfishSimulator;
+import org.mtgpeasant.perfectdeck.common.cards.Library;
+import org.mtgpeasant.perfectdeck.common.utils.CancellationToken;
+import org.mtgpeasant.perfectdeck.common.utils.ParallelRange;
+import org.mtgpeasant.perfectdeck.common.utils.Seeds;
+import org.mtgpeasant.perfectdeck.common.utils.SimulationListener;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.random.RandomGenerator;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -27,6 +33,40 @@ public class MulliganSimulator {
     final int iterations = 50000;
     @Builder.Default
     final boolean verbose = false;
+    /**
+     * Number of worker threads ({@code 0} for the number of available processors)
+     * <p>
+     * Ignored when an {@link #executor} is provided
+     */
+    @Builder.Default
+    final int parallelism = 0;
+    /**
+     * Number of hands drawn in one chunk by a worker thread
+     */
+    @Builder.Default
+    final int chunkSize = 1000;
+    /**
+     * Optional pool to run the simulation in (a dedicated pool is created for each simulation otherwise)
+     */
+    @Builder.Default
+    final ForkJoinPool executor = null;
+    /**
+     * Master seed of the simulation (a random one is chosen if unset)
+     * <p>
+     * Simulating with the same seed draws the very same hands
+     */
+    @Builder.Default
+    final Long seed = null;
+    /**
+     * Optional progress listener
+     */
+    @Builder.Default
+    final SimulationListener listener = null;
+    /**
+     * Optional cancellation token: a cancelled simulation returns results for the hands it completed
+     */
+    @Builder.Default
+    final CancellationToken cancellation = null;
 
     final MulliganRules rules;
 
@@ -34,12 +74,16 @@ public class MulliganSimulator {
     @Getter
     public static class DeckMatches {
         final Deck deck;
-        final int iterations;
+        /**
+         * Number of drawn hands (lower than requested if the simulation was cancelled)
+         */
+        int iterations;
         final Map<String, Integer> matchCount = new HashMap<>();
         int noMatchCount = 0;
 
         private void addMatch(Matchers.NamedMatcher criteria) {
             matchCount.put(criteria.getName(), getMatchCount(criteria) + 1);
+            iterations++;
         }
 
         /**
@@ -54,6 +98,14 @@ public class MulliganSimulator {
 
         private void addNoMatch() {
             noMatchCount++;
+            iterations++;
+        }
+
+        private DeckMatches merge(DeckMatches other) {
+            other.matchCount.forEach((name, count) -> matchCount.merge(name, count, Integer::sum));
+            noMatchCount += other.noMatchCount;
+            iterations += other.iterations;
+            return this;
         }
     }
 
@@ -76,27 +128,38 @@ public class MulliganSimulator {
      * @return opening hands statistics
      */
     public DeckMatches simulate(Deck deck) {
-        DeckMatches deckMatches = DeckMatches.builder().deck(deck).iterations(iterations).build();
         // TODO: reduce applicable rules (exclude all rules that don't match the entire deck)
         // will not work with negative rules ?
-        for (int it = 0; it < iterations; it++) {
-            Cards hand = deck.getMain().shuffle().draw(draw);
-            // TODO: simulate start and mulligans too
-            Optional<Matchers.NamedMatcher> matching = rules.firstMatch(true, 0, hand);
-            if (matching.isPresent()) {
-                // increment match count
-                deckMatches.addMatch(matching.get());
-                if (verbose) {
-                    System.out.println(hand + " matches: " + matching.get().getName());
-                }
-            } else {
-                deckMatches.addNoMatch();
-                if (verbose) {
-                    System.out.println(hand + " rejected (no match)");
-                }
+        long masterSeed = seed != null ? seed : Seeds.newSeed();
+        return ParallelRange.reduce(
+                executor,
+                parallelism,
+                iterations,
+                chunkSize,
+                listener,
+                cancellation,
+                () -> DeckMatches.builder().deck(deck).build(),
+                (chunkMatches, idx) -> simulateHand(deck, Seeds.random(masterSeed, idx), chunkMatches),
+                DeckMatches::merge
+        );
+    }
+
+    private void simulateHand(Deck deck, RandomGenerator random, DeckMatches deckMatches) {
+        Cards hand = Library.of(deck.getMain(), random).draw(draw);
+        // TODO: simulate start and mulligans too
+        Optional<Matchers.NamedMatcher> matching = rules.firstMatch(true, 0, hand);
+        if (matching.isPresent()) {
+            // increment match count
+            deckMatches.addMatch(matching.get());
+            if (verbose) {
+                System.out.println(hand + " matches: " + matching.get().getName());
+            }
+        } else {
+            deckMatches.addNoMatch();
+            if (verbose) {
+                System.out.println(hand + " rejected (no match)");
             }
         }
-        return deckMatches;
     }
 
 }
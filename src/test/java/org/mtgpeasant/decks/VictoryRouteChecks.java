@@ -0,0 +1,77 @@
+package org.mtgpeasant.decks;
+
+import org.assertj.core.api.Assertions;
+import org.mtgpeasant.perfectdeck.common.cards.Deck;
+import org.mtgpeasant.perfectdeck.goldfish.DeckPilot;
+import org.mtgpeasant.perfectdeck.goldfish.Game;
+import org.mtgpeasant.perfectdeck.goldfish.GoldfishSimulator;
+import org.mtgpeasant.perfectdeck.goldfish.Seer;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Checks the {@link Seer} search reductions (damage bound, commuting spells) don't change the victory routes found by
+ * a pilot
+ * <p>
+ * Each pilot test declares a checking pilot that drops its reductions according to a {@link Reductions} switch, and
+ * wraps its victory search with {@link #check(Game, Consumer, Supplier)}
+ */
+public class VictoryRouteChecks {
+    public enum Reductions {
+        /**
+         * all reductions applied
+         */
+        ALL,
+        /**
+         * no damage nor poison bound
+         */
+        NO_BOUND,
+        /**
+         * no commuting spells: every order is explored
+         */
+        NO_COMMUTE
+    }
+
+    /**
+     * Runs the victory search with all reductions, then again without each of them, and asserts they agree
+     * <p>
+     * Without the bound the very same route must be found; without commuting spells another order may be found, so
+     * only the existence of a route is compared
+     */
+    public static Optional<Seer.VictoryRoute> check(Game game, Consumer<Reductions> reductions, Supplier<Optional<Seer.VictoryRoute>> search) {
+        Optional<Seer.VictoryRoute> route = search.get();
+        try {
+            reductions.accept(Reductions.NO_BOUND);
+            Assertions.assertThat(search.get())
+                    .as("unbounded route found on turn %d with %s", game.getCurrentTurn(), game.getHand())
+                    .isEqualTo(route);
+            reductions.accept(Reductions.NO_COMMUTE);
+            Assertions.assertThat(search.get().isPresent())
+                    .as("route in any order found on turn %d with %s", game.getCurrentTurn(), game.getHand())
+                    .isEqualTo(route.isPresent());
+        } finally {
+            reductions.accept(Reductions.ALL);
+        }
+        return route;
+    }
+
+    /**
+     * Goldfishes each deck fixture (resolved relative to the pilot class) with the given checking pilot
+     */
+    public static void simulate(Class<? extends DeckPilot> pilotClass, int iterations, String... fixtures) throws IOException {
+        for (String fixture : fixtures) {
+            Deck deck = Deck.parse(new InputStreamReader(pilotClass.getResourceAsStream(fixture)));
+            GoldfishSimulator.builder()
+                    .iterations(iterations)
+                    .maxTurns(10)
+                    .seed(42L)
+                    .pilotClass(pilotClass)
+                    .build()
+                    .simulate(deck);
+        }
+    }
+}
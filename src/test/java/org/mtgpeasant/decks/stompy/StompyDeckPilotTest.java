@@ -1,11 +1,15 @@
 package org.mtgpeasant.decks.stompy;
 
 import org.junit.Test;
+import org.mtgpeasant.decks.VictoryRouteChecks;
 import org.mtgpeasant.perfectdeck.Tools;
+import org.mtgpeasant.perfectdeck.goldfish.Game;
 import org.mtgpeasant.perfectdeck.goldfish.GoldfishSimulator;
+import org.mtgpeasant.perfectdeck.goldfish.Seer;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Optional;
 
 public class StompyDeckPilotTest {
     @Test
@@ -55,4 +59,40 @@ public class StompyDeckPilotTest {
                 true,
                 true);
     }
+
+    // fewest games reaching every bound and commutation branch the fixtures exercise
+    private static final int ITERATIONS = 500;
+
+    @Test
+    public void search_reductions_should_not_change_victory_routes() throws IOException {
+        VictoryRouteChecks.simulate(CheckingPilot.class, ITERATIONS, "stompy-deck-grant.txt", "stompy-deck-cdf.txt", "stompy-deck-cf.txt");
+    }
+
+    static class CheckingPilot extends StompyDeckPilot {
+        private VictoryRouteChecks.Reductions reductions = VictoryRouteChecks.Reductions.ALL;
+
+        CheckingPilot(Game game) {
+            super(game);
+        }
+
+        @Override
+        public int maxDamage() {
+            return reductions == VictoryRouteChecks.Reductions.NO_BOUND ? Integer.MAX_VALUE : super.maxDamage();
+        }
+
+        @Override
+        public int maxPoison() {
+            return reductions == VictoryRouteChecks.Reductions.NO_BOUND ? Integer.MAX_VALUE : super.maxPoison();
+        }
+
+        @Override
+        public boolean commute(String card, String other) {
+            return reductions != VictoryRouteChecks.Reductions.NO_COMMUTE && super.commute(card, other);
+        }
+
+        @Override
+        Optional<Seer.VictoryRoute> findRouteToVictory() {
+            return VictoryRouteChecks.check(game, reductions -> this.reductions = reductions, super::findRouteToVictory);
+        }
+    }
 }
@@ -0,0 +1,110 @@
+package org.mtgpeasant.perfectdeck.common.cards;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+public class CardsTest {
+    @Test
+    public void names_should_be_interned() {
+        int id = CardRegistry.register("lightning bolt");
+        Assertions.assertThat(CardRegistry.register("lightning bolt")).isEqualTo(id);
+        Assertions.assertThat(CardRegistry.idOf("lightning bolt")).isEqualTo(id);
+        Assertions.assertThat(CardRegistry.name(id)).isEqualTo("lightning bolt");
+        Assertions.assertThat(CardRegistry.idOf("never registered card")).isEqualTo(-1);
+    }
+
+    @Test
+    public void cards_should_behave_as_a_deque() {
+        // GIVEN
+        Cards cards = Cards.of("swamp", "dark ritual", "swamp");
+
+        // WHEN
+        cards.addFirst("exhume");
+        cards.addLast("entomb");
+        cards.remove("swamp");
+
+        // THEN
+        Assertions.assertThat(cards).containsExactly("exhume", "dark ritual", "swamp", "entomb");
+        Assertions.assertThat(cards.getFirst()).isEqualTo("exhume");
+        Assertions.assertThat(cards.count("swamp", "entomb")).isEqualTo(2);
+        Assertions.assertThat(cards.countIds(CardRegistry.idOf("swamp"))).isEqualTo(1);
+        Assertions.assertThat(cards.contains("_")).isFalse();
+        Assertions.assertThat(cards.draw(2)).containsExactly("exhume", "dark ritual");
+        Assertions.assertThat(cards).containsExactly("swamp", "entomb");
+    }
+
+    @Test
+    public void cards_should_grow() {
+        // GIVEN
+        Cards cards = Cards.empty();
+
+        // WHEN
+        for (int i = 0; i < 40; i++) {
+            if (i % 2 == 0) {
+                cards.addFirst("card " + i);
+            } else {
+                cards.addLast("card " + i);
+            }
+        }
+
+        // THEN
+        Assertions.assertThat(cards).hasSize(40);
+        Assertions.assertThat(cards.getFirst()).isEqualTo("card 38");
+        Assertions.assertThat(cards.getLast()).isEqualTo("card 39");
+        Assertions.assertThat(cards.shuffle()).containsOnlyElementsOf(cards).hasSize(40);
+    }
+
+    @Test
+    public void library_should_be_shuffled_lazily() {
+        // GIVEN
+        Cards deck = Cards.of("swamp", "swamp", "swamp", "exhume", "entomb", "dark ritual", "lotus petal", "putrid imp");
+        Library library = Library.of(deck, new SplittableRandom(42));
+
+        // WHEN
+        Cards hand = library.draw(3);
+        library.addLast("swamp");
+        library.addFirst("exhume");
+        String top = library.getFirst();
+        Cards looked = library.look(2);
+
+        // THEN
+        Assertions.assertThat(library).hasSize(7);
+        Assertions.assertThat(top).isEqualTo("exhume");
+        Assertions.assertThat(looked.getFirst()).isEqualTo("exhume");
+        Assertions.assertThat(library.getLast()).isEqualTo("swamp");
+        Assertions.assertThat(library.count("swamp") + hand.count("swamp")).isEqualTo(4);
+
+        // WHEN
+        library.reset();
+
+        // THEN
+        Assertions.assertThat(library).hasSize(8).containsOnlyElementsOf(deck);
+        Assertions.assertThat(library.count("swamp")).isEqualTo(3);
+    }
+
+    @Test
+    public void indexed_cards_should_count_by_id_and_keep_order() {
+        // GIVEN
+        Cards cards = Cards.indexed("swamp", "exhume", "swamp", "dark ritual", "swamp", "exhume");
+        Cards clone = cards.clone();
+
+        // WHEN
+        cards.remove("swamp");
+        cards.addFirst("entomb");
+        cards.removeLast();
+
+        // THEN
+        Assertions.assertThat(cards).containsExactly("entomb", "exhume", "swamp", "dark ritual", "swamp");
+        Assertions.assertThat(cards.count("swamp")).isEqualTo(2);
+        Assertions.assertThat(cards.count("swamp", "exhume", "swamp")).isEqualTo(3);
+        Assertions.assertThat(cards.contains("exhume")).isTrue();
+        Assertions.assertThat(cards.getFirst()).isEqualTo("entomb");
+        Assertions.assertThat(clone.count("exhume")).isEqualTo(2);
+        Assertions.assertThat(clone.contains("entomb")).isFalse();
+        Assertions.assertThat(cards.remove("exhume")).isTrue();
+        Assertions.assertThat(cards.remove("exhume")).isFalse();
+        Assertions.assertThat(cards.count("exhume")).isZero();
+    }
+}
@@ -113,4 +113,27 @@ public class ManaTest {
         assertThat(result.getNotExtracted()).isEqualTo(of("RR"));
         assertThat(result.getRest()).isEqualTo(of("2"));
     }
+
+    @Test
+    public void packed_operations() {
+        long pool = of("2BGG").getPacked();
+        assertThat(Mana.contains(pool, of("1GG").getPacked())).isTrue();
+        assertThat(Mana.contains(pool, of("GGG").getPacked())).isFalse();
+        assertThat(Mana.contains(pool, of("4B").getPacked())).isTrue();
+        assertThat(Mana.contains(pool, of("5B").getPacked())).isFalse();
+        assertThat(Mana.of(Mana.minus(pool, of("3G").getPacked()))).isEqualTo(of("G"));
+        assertThat(Mana.of(Mana.minus(of("BR").getPacked(), of("1").getPacked()))).isEqualTo(of("R"));
+        assertThat(Mana.of(Mana.minus(of("BR").getPacked(), of("1").getPacked(), of("B").getPacked()))).isEqualTo(of("B"));
+        assertThat(Mana.of(Mana.plus(pool, of("R").getPacked()))).isEqualTo(of("2BRGG"));
+        assertThat(Mana.ccm(pool)).isEqualTo(5);
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> Mana.plus(Mana.pack(Mana.MAX, 0, 0, 0, 0, 0), pool));
+    }
+
+    @Test
+    public void hashcode_test() {
+        Mana mana = of(5, 0, 0, 0, 0, 4).minus(of("BBBB4")).plus(of("U1"));
+        assertThat(mana).isEqualTo(of("1BU"));
+        assertThat(mana.hashCode()).isEqualTo(of("1BU").hashCode());
+        assertThat(of("1BU")).isSameAs(of("U1B"));
+    }
 }
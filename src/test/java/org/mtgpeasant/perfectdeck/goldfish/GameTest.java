@@ -4,9 +4,17 @@ import org.assertj.core.api.Assertions;
 import org.junit.Test;
 import org.mtgpeasant.perfectdeck.common.mana.Mana;
 import org.mtgpeasant.perfectdeck.common.cards.Cards;
+import org.mtgpeasant.perfectdeck.common.cards.Library;
+import org.mtgpeasant.perfectdeck.goldfish.event.GameEvent;
+import org.mtgpeasant.perfectdeck.goldfish.event.GameListener;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
 
 public class GameTest {
     @Test
@@ -76,4 +84,287 @@ public class GameTest {
         System.out.println("remains: " + game.getPool());
     }
 
+    @Test
+    public void fork_and_rollback_should_draw_the_same_cards_lazily() throws CloneNotSupportedException {
+        // GIVEN
+        Library library = Library.of(Cards.of(Collections.nCopies(20, "swamp")), new SplittableRandom(42));
+        Arrays.asList("exhume", "entomb", "dark ritual", "putrid imp", "animate dead").forEach(library::addFirst);
+        library = library.shuffle(new SplittableRandom(42));
+        Cards hand = library.draw(7);
+        Game game = new Game(true, null);
+        game.keepHandAndStart(library, hand);
+        String before = game.getLibrary().toString();
+
+        // WHEN
+        Game fork = game.fork();
+        Cards forkDraws = fork.getLibrary().draw(5);
+        int mark = game.checkpoint();
+        Cards exploredDraws = game.draw(5);
+        game.rollback(mark);
+        String afterRollback = game.getLibrary().toString();
+        Cards draws = game.draw(5);
+
+        // THEN
+        Assertions.assertThat(before).endsWith("<18 shuffled>]");
+        Assertions.assertThat(afterRollback).isEqualTo(before);
+        Assertions.assertThat(forkDraws).containsExactlyElementsOf(draws);
+        Assertions.assertThat(exploredDraws).containsExactlyElementsOf(draws);
+    }
+
+    @Test
+    public void fork_should_not_affect_original_game() throws CloneNotSupportedException {
+        // GIVEN
+        Cards library = Cards.of(new ArrayList<>(Arrays.asList("swamp", "swamp", "mountain", "putrid imp", "exhume", "dark ritual", "animate dead", "entomb", "lotus petal")));
+        Cards hand = library.draw(7);
+        Game game = new Game(true, null);
+        game.keepHandAndStart(library, hand);
+        Permanent swamp = game.land("swamp");
+
+        // WHEN
+        Game fork = game.fork();
+        fork.tap(fork.getBattlefield().findFirst(Permanent.withName("swamp")).get());
+        fork.discard("exhume");
+        fork.putOnBottomOfLibrary("dark ritual");
+        fork.getBattlefield().get(0).tag("forked");
+
+        // THEN
+        Assertions.assertThat(swamp.isTapped()).isFalse();
+        Assertions.assertThat(swamp.hasTag("forked")).isFalse();
+        Assertions.assertThat(game.getBattlefield().count(Permanent.tapped())).isEqualTo(0);
+        Assertions.assertThat(fork.getBattlefield().count(Permanent.tapped())).isEqualTo(1);
+        Assertions.assertThat(game.getHand()).contains("exhume").hasSize(6);
+        Assertions.assertThat(fork.getHand()).doesNotContain("exhume", "dark ritual").hasSize(4);
+        Assertions.assertThat(game.getGraveyard()).isEmpty();
+        Assertions.assertThat(game.getLibrary()).hasSize(2);
+        Assertions.assertThat(fork.getLibrary()).hasSize(3);
+    }
+
+    @Test
+    public void original_game_should_not_affect_fork() throws CloneNotSupportedException {
+        // GIVEN
+        Cards library = Cards.of(new ArrayList<>(Arrays.asList("swamp", "swamp", "mountain", "putrid imp", "exhume", "dark ritual", "animate dead", "entomb", "lotus petal")));
+        Cards hand = library.draw(7);
+        Game game = new Game(true, null);
+        game.keepHandAndStart(library, hand);
+        Permanent swamp = game.land("swamp");
+        Game fork = game.fork();
+
+        // WHEN
+        game.tap(swamp);
+        swamp.tag("original");
+        game.getBattlefield().add(Permanent.permanent("mountain", Game.CardType.land));
+        game.discard("exhume");
+
+        // THEN
+        Permanent forkSwamp = fork.getBattlefield().get(0);
+        Assertions.assertThat(forkSwamp).isNotSameAs(swamp);
+        Assertions.assertThat(forkSwamp.isTapped()).isFalse();
+        Assertions.assertThat(forkSwamp.hasTag("original")).isFalse();
+        Assertions.assertThat(fork.getBattlefield()).hasSize(1);
+        Assertions.assertThat(fork.getBattlefield().count(Permanent.tapped())).isEqualTo(0);
+        Assertions.assertThat(fork.getHand()).contains("exhume").hasSize(6);
+        Assertions.assertThat(game.getBattlefield()).hasSize(2);
+    }
+
+    @Test
+    public void mana_capability_should_bound_producible_mana() {
+        // GIVEN
+        Game game = new Game(true, null);
+        game.keepHandAndStart(Cards.of(), Cards.of("simian spirit guide", "forest"));
+        Permanent forest = Permanent.permanent("forest", Game.CardType.land);
+        game.getBattlefield().add(forest);
+        game.getBattlefield().add(Permanent.permanent("forest", Game.CardType.land).setTapped(true));
+        Permanent petal = Permanent.permanent("lotus petal", Game.CardType.artifact);
+        game.getBattlefield().add(petal);
+        ManaCapability.Rules rules = ManaCapability.rules()
+                .tap(Mana.G(), "forest")
+                .land(Mana.G(), "forest")
+                .sacrifice(new Mana[]{Mana.R(), Mana.G()}, "lotus petal")
+                .discard(Mana.R(), "simian spirit guide");
+
+        // WHEN
+        ManaCapability capability = game.getManaCapability(rules);
+
+        // THEN
+        Assertions.assertThat(game.getManaCapability(rules)).isSameAs(capability);
+        Assertions.assertThat(capability.mayPay(Mana.of("GGGR"))).isTrue();
+        Assertions.assertThat(capability.mayPay(Mana.of("GGGG"))).isFalse();
+        Assertions.assertThat(capability.mayPay(Mana.of("5"))).isFalse();
+
+        // WHEN
+        game.tapLandForMana(forest, Mana.G());
+        game.sacrifice(petal);
+
+        // THEN
+        capability = game.getManaCapability(rules);
+        Assertions.assertThat(capability.mayPay(Mana.of("GGR"))).isTrue();
+        Assertions.assertThat(capability.mayPay(Mana.of("GGGR"))).isFalse();
+    }
+
+    @Test
+    public void state_hash_should_not_depend_on_actions_order() {
+        // GIVEN
+        Cards library = Cards.of(new ArrayList<>(Arrays.asList("swamp", "swamp", "mountain", "putrid imp", "exhume", "dark ritual", "animate dead", "entomb", "lotus petal")));
+        Cards hand = library.draw(7);
+        Game game = new Game(true, null);
+        game.keepHandAndStart(library, hand);
+        game.startPhase(Game.Phase.first_main);
+        long initial = game.getStateHash();
+
+        // WHEN
+        int mark = game.checkpoint();
+        game.move("mountain", Game.Area.hand, Game.Area.battlefield, Game.CardType.land);
+        game.move("swamp", Game.Area.hand, Game.Area.battlefield, Game.CardType.land).setTapped(true);
+        long first = game.getStateHash();
+        game.rollback(mark);
+        long rolledBack = game.getStateHash();
+        mark = game.checkpoint();
+        game.move("swamp", Game.Area.hand, Game.Area.battlefield, Game.CardType.land).setTapped(true);
+        game.move("mountain", Game.Area.hand, Game.Area.battlefield, Game.CardType.land);
+        long second = game.getStateHash();
+        game.getBattlefield().findFirst(Permanent.withName("mountain")).get().setTapped(true);
+        long third = game.getStateHash();
+        game.rollback(mark);
+
+        // THEN
+        Assertions.assertThat(rolledBack).isEqualTo(initial);
+        Assertions.assertThat(first).isNotEqualTo(initial);
+        Assertions.assertThat(second).isEqualTo(first);
+        Assertions.assertThat(third).isNotEqualTo(second);
+    }
+
+    @Test
+    public void rollback_should_undo_changes_since_checkpoint() {
+        // GIVEN
+        Cards library = Cards.of(new ArrayList<>(Arrays.asList("swamp", "swamp", "mountain", "putrid imp", "exhume", "dark ritual", "animate dead", "entomb", "lotus petal")));
+        Cards hand = library.draw(7);
+        Game game = new Game(true, null);
+        game.keepHandAndStart(library, hand);
+        game.startPhase(Game.Phase.first_main);
+        Permanent swamp = game.land("swamp");
+        swamp.addCounter("+1/+1", 1);
+
+        // WHEN
+        int mark = game.checkpoint();
+        game.tapLandForMana(swamp, Mana.of("B"));
+        game.castCreature("putrid imp", Mana.of("B"));
+        int nested = game.checkpoint();
+        game.sacrifice(game.getBattlefield().findFirst(Permanent.withName("putrid imp")).get());
+        game.rollback(nested);
+        game.move("mountain", Game.Area.hand, Game.Area.battlefield, Game.CardType.land);
+        swamp.addCounter("+1/+1", 2).tag("explored");
+        game.damageOpponent(3);
+        game.putOnBottomOfLibrary("exhume");
+        game.rollback(mark);
+
+        // THEN
+        Assertions.assertThat(swamp.isTapped()).isFalse();
+        Assertions.assertThat(swamp.getCounter("+1/+1")).isEqualTo(1);
+        Assertions.assertThat(swamp.hasTag("explored")).isFalse();
+        Assertions.assertThat(game.getBattlefield()).containsExactly(swamp);
+        Assertions.assertThat(game.getBattlefield().count(Permanent.tapped())).isEqualTo(0);
+        Assertions.assertThat(game.getBattlefield().findFirst(Permanent.withName("mountain"))).isEmpty();
+        Assertions.assertThat(game.getHand()).contains("putrid imp", "mountain", "exhume").hasSize(6);
+        Assertions.assertThat(game.getGraveyard()).isEmpty();
+        Assertions.assertThat(game.getLibrary()).hasSize(2);
+        Assertions.assertThat(game.getPool()).isEqualTo(Mana.zero());
+        Assertions.assertThat(game.getOpponentLife()).isEqualTo(20);
+        Assertions.assertThat(game.isLanded()).isTrue();
+    }
+
+    @Test
+    public void reset_should_restore_initial_state() {
+        // GIVEN
+        Cards library = Cards.of(new ArrayList<>(Arrays.asList("swamp", "swamp", "mountain", "putrid imp", "exhume", "dark ritual", "animate dead", "entomb", "lotus petal")));
+        Cards hand = library.draw(7);
+        Game game = new Game(true, null);
+        game.keepHandAndStart(library, hand);
+        game.startNextTurn();
+        game.startPhase(Game.Phase.first_main);
+        game.tap(game.land("swamp"));
+        game.discard("exhume");
+        game.damageOpponent(2);
+
+        // WHEN
+        game.reset(false, null);
+        game.keepHandAndStart(Cards.of("entomb"), Cards.of("mountain", "lotus petal"));
+
+        // THEN
+        Assertions.assertThat(game.isOnThePlay()).isFalse();
+        Assertions.assertThat(game.getCurrentTurn()).isEqualTo(0);
+        Assertions.assertThat(game.getOpponentLife()).isEqualTo(20);
+        Assertions.assertThat(game.isLanded()).isFalse();
+        Assertions.assertThat(game.getBattlefield()).isEmpty();
+        Assertions.assertThat(game.getBattlefield().count(Permanent.tapped())).isEqualTo(0);
+        Assertions.assertThat(game.getGraveyard()).isEmpty();
+        Assertions.assertThat(game.getHand()).containsOnly("mountain", "lotus petal").hasSize(2);
+    }
+
+    @Test
+    public void listeners_should_only_receive_subscribed_events() {
+        // GIVEN
+        Cards library = Cards.of(new ArrayList<>(Arrays.asList("swamp", "swamp", "mountain", "putrid imp", "exhume", "dark ritual", "animate dead", "entomb", "lotus petal")));
+        Cards hand = library.draw(7);
+        Game game = new Game(true, null);
+        game.keepHandAndStart(library, hand);
+        game.startPhase(Game.Phase.first_main);
+        // events are reused: only keep their content
+        List<String> entered = new ArrayList<>();
+        game.addListener(new GameListener() {
+            @Override
+            public void onEvent(GameEvent event) {
+                entered.add(((GameEvent.CardMovedEvent) event).getCardName());
+            }
+
+            @Override
+            public Set<GameEvent.Type> getEventTypes() {
+                return EnumSet.of(GameEvent.Type.enter);
+            }
+
+            @Override
+            public Set<Game.Area> getEventAreas() {
+                return EnumSet.of(Game.Area.battlefield);
+            }
+        });
+
+        // WHEN
+        game.tapLandForMana(game.land("swamp"), Mana.of("B"));
+        game.castCreature("putrid imp", Mana.of("B"));
+        game.discard("exhume");
+
+        // THEN
+        Assertions.assertThat(game.isSubscribed(GameEvent.Type.cast, null)).isFalse();
+        Assertions.assertThat(game.isSubscribed(GameEvent.Type.enter, Game.Area.graveyard)).isFalse();
+        Assertions.assertThat(entered).containsExactly("swamp", "putrid imp");
+    }
+
+    @Test
+    public void events_triggered_by_listeners_should_not_alter_the_dispatched_one() {
+        // GIVEN
+        Cards library = Cards.of(new ArrayList<>(Arrays.asList("swamp", "swamp", "mountain", "putrid imp", "exhume", "dark ritual", "animate dead", "entomb", "lotus petal")));
+        Cards hand = library.draw(7);
+        Game game = new Game(true, null);
+        game.keepHandAndStart(library, hand);
+        game.startPhase(Game.Phase.first_main);
+        List<String> events = new ArrayList<>();
+        // first listener discards a card whenever a land enters the battlefield
+        game.addListener(event -> {
+            if (event.getType() == GameEvent.Type.enter && ((GameEvent.CardMovedEvent) event).getCardName().equals("swamp")) {
+                game.discard("exhume");
+            }
+        });
+        game.addListener(event -> events.add(event.getType() + " " + ((GameEvent.CardEvent) event).getCardName()));
+
+        // WHEN
+        game.land("swamp");
+
+        // THEN
+        Assertions.assertThat(events).containsExactly(
+                "leave swamp",
+                "leave exhume",
+                "enter exhume",
+                "discard exhume",
+                "enter swamp"
+        );
+    }
 }
@@ -0,0 +1,390 @@
+package org.mtgpeasant.perfectdeck.goldfish;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import org.mtgpeasant.perfectdeck.common.cards.Cards;
+import org.mtgpeasant.perfectdeck.common.cards.Deck;
+import org.mtgpeasant.perfectdeck.common.mana.Mana;
+import org.mtgpeasant.perfectdeck.common.utils.CancellationToken;
+import org.mtgpeasant.perfectdeck.common.utils.SimulationListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.mtgpeasant.perfectdeck.goldfish.GoldfishSimulator.GameResult.Outcome.TIMEOUT;
+import static org.mtgpeasant.perfectdeck.goldfish.GoldfishSimulator.GameResult.Outcome.WON;
+import static org.mtgpeasant.perfectdeck.goldfish.GoldfishSimulator.Start.OTD;
+import static org.mtgpeasant.perfectdeck.goldfish.GoldfishSimulator.Start.OTP;
+
+public class GoldfishSimulatorTest {
+    @Test
+    public void cubes_should_count_and_merge() {
+        // GIVEN
+        GoldfishSimulator.ResultsCube cube1 = new GoldfishSimulator.ResultsCube(10);
+        cube1.add(OTP, 0, WON, 4);
+        cube1.add(OTP, 0, WON, 4);
+        cube1.add(OTD, 1, WON, 5);
+
+        GoldfishSimulator.ResultsCube cube2 = new GoldfishSimulator.ResultsCube(10);
+        cube2.add(OTP, 0, WON, 4);
+        cube2.add(OTD, 3, TIMEOUT, 11);
+
+        // WHEN
+        GoldfishSimulator.DeckStats stats = GoldfishSimulator.DeckStats.builder()
+                .iterations(5)
+                .results(cube1.merge(cube2).toResults())
+                .build();
+
+        // THEN
+        Assertions.assertThat(stats.getResults()).hasSize(3);
+        Assertions.assertThat(stats.count(result -> true)).isEqualTo(5);
+        Assertions.assertThat(stats.count(GoldfishSimulator.DeckStats.withStart(OTP))).isEqualTo(3);
+        Assertions.assertThat(stats.getMulligans()).containsExactly(0, 1, 3);
+        Assertions.assertThat(stats.getWinTurns(result -> result.getOutcome() == WON)).containsExactly(4, 5);
+    }
+
+    @Test
+    public void same_seed_should_produce_same_games() {
+        // GIVEN
+        GoldfishSimulator.GoldfishSimulatorBuilder simulator = GoldfishSimulator.builder()
+                .iterations(2000)
+                .maxTurns(10)
+                .seed(42L)
+                .pilotClass(SpikesPilot.class);
+
+        // WHEN
+        GoldfishSimulator.DeckStats stats1 = simulator.build().simulate(SpikesPilot.DECK);
+        GoldfishSimulator.DeckStats stats2 = simulator.parallelism(1).build().simulate(SpikesPilot.DECK);
+
+        // THEN
+        Assertions.assertThat(stats1.getSeed()).isEqualTo(42L);
+        Assertions.assertThat(dump(stats1)).isEqualTo(dump(stats2));
+    }
+
+    @Test
+    public void paired_comparison_of_same_decks_should_have_no_difference() {
+        // GIVEN
+        GoldfishSimulator simulator = GoldfishSimulator.builder()
+                .iterations(2000)
+                .maxTurns(10)
+                .pilotClass(SpikesPilot.class)
+                .build();
+
+        // WHEN
+        GoldfishSimulator.Comparison comparison = simulator.compare(Arrays.asList(SpikesPilot.DECK, SpikesPilot.DECK));
+
+        // THEN
+        Assertions.assertThat(dump(comparison.getStats().get(0))).isEqualTo(dump(comparison.getStats().get(1)));
+        GoldfishSimulator.PairedDifference difference = comparison.getDifferences().get(0);
+        Assertions.assertThat(difference.getGames()).isEqualTo(2000);
+        Assertions.assertThat(difference.getWinTurnDelta().getMean()).isEqualTo(0d);
+        Assertions.assertThat(difference.getWinTurnDelta().getStandardError()).isEqualTo(0d);
+        Assertions.assertThat(difference.getWinByTurnDelta(5).getMean()).isEqualTo(0d);
+    }
+
+    @Test
+    public void paired_comparison_of_different_decks_should_have_lower_variance_than_unpaired() {
+        // GIVEN
+        Deck slower = Deck.builder()
+                .main(Cards.of(Stream.of(Collections.nCopies(20, "mountain"), Collections.nCopies(30, "lava spike"), Collections.nCopies(10, "swamp")).flatMap(List::stream).collect(Collectors.toList())))
+                .sideboard(Cards.empty())
+                .build();
+        GoldfishSimulator simulator = GoldfishSimulator.builder()
+                .iterations(2000)
+                .maxTurns(10)
+                .seed(42L)
+                .pilotClass(SpikesPilot.class)
+                .build();
+
+        // WHEN
+        GoldfishSimulator.Comparison comparison = simulator.compare(Arrays.asList(SpikesPilot.DECK, slower));
+
+        // THEN
+        GoldfishSimulator.PairedDifference difference = comparison.getDifferences().get(0);
+        double unpairedError = Math.sqrt(squaredStandardError(comparison.getStats().get(0)) + squaredStandardError(comparison.getStats().get(1)));
+        Assertions.assertThat(difference.getWinTurnDelta().getMean()).isPositive();
+        Assertions.assertThat(difference.getWinTurnDelta().getStandardError()).isLessThan(unpairedError);
+    }
+
+    private static double squaredStandardError(GoldfishSimulator.DeckStats stats) {
+        long count = 0, sum = 0, sumSq = 0;
+        for (GoldfishSimulator.GameResult result : stats.getResults()) {
+            count += result.getCount();
+            sum += (long) result.getCount() * result.getEndTurn();
+            sumSq += (long) result.getCount() * result.getEndTurn() * result.getEndTurn();
+        }
+        double mean = (double) sum / count;
+        return (sumSq - mean * sum) / (count - 1) / count;
+    }
+
+    @Test
+    public void cancelled_simulation_should_return_partial_stats() {
+        // GIVEN
+        CancellationToken cancellation = new CancellationToken();
+        List<SimulationListener.Progress> progresses = new ArrayList<>();
+        GoldfishSimulator simulator = GoldfishSimulator.builder()
+                .iterations(2000)
+                .parallelism(1)
+                .chunkSize(100)
+                .pilotClass(SpikesPilot.class)
+                .listener(progress -> {
+                    progresses.add(progress);
+                    cancellation.cancel();
+                })
+                .cancellation(cancellation)
+                .build();
+
+        // WHEN
+        GoldfishSimulator.DeckStats stats = simulator.simulate(SpikesPilot.DECK);
+
+        // THEN
+        Assertions.assertThat(progresses).hasSize(1);
+        long completed = progresses.get(0).getCompleted();
+        Assertions.assertThat(completed).isBetween(1L, 100L);
+        Assertions.assertThat(progresses.get(0).getTotal()).isEqualTo(2000);
+        Assertions.assertThat((long) stats.getIterations()).isEqualTo(completed);
+        Assertions.assertThat(stats.count(result -> true)).isEqualTo(completed);
+    }
+
+    @Test
+    public void publisher_should_emit_snapshots_then_final_stats() throws InterruptedException {
+        // GIVEN
+        GoldfishSimulator simulator = GoldfishSimulator.builder()
+                .iterations(2000)
+                .chunkSize(100)
+                .snapshotInterval(0)
+                .pilotClass(SpikesPilot.class)
+                .build();
+        List<GoldfishSimulator.DeckStats> received = new CopyOnWriteArrayList<>();
+        CountDownLatch completed = new CountDownLatch(1);
+
+        // WHEN
+        simulator.publish(SpikesPilot.DECK).subscribe(new Flow.Subscriber<GoldfishSimulator.DeckStats>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(GoldfishSimulator.DeckStats stats) {
+                received.add(stats);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+                completed.countDown();
+            }
+        });
+
+        // THEN
+        Assertions.assertThat(completed.await(30, TimeUnit.SECONDS)).isTrue();
+        Assertions.assertThat(received.size()).isGreaterThan(1);
+        Assertions.assertThat(received.get(0).getIterations()).isLessThan(2000);
+        Assertions.assertThat(received.get(received.size() - 1).getIterations()).isEqualTo(2000);
+    }
+
+    @Test
+    public void cancelling_subscription_should_stop_simulation() {
+        // GIVEN
+        ForkJoinPool pool = new ForkJoinPool(2);
+        List<SimulationListener.Progress> progresses = new CopyOnWriteArrayList<>();
+        GoldfishSimulator simulator = GoldfishSimulator.builder()
+                .iterations(1_000_000)
+                .chunkSize(100)
+                .snapshotInterval(0)
+                .executor(pool)
+                .listener(progresses::add)
+                .pilotClass(SpikesPilot.class)
+                .build();
+
+        // WHEN
+        simulator.publish(SpikesPilot.DECK).subscribe(new Flow.Subscriber<GoldfishSimulator.DeckStats>() {
+            Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(GoldfishSimulator.DeckStats stats) {
+                subscription.cancel();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        // THEN
+        Assertions.assertThat(pool.awaitQuiescence(30, TimeUnit.SECONDS)).isTrue();
+        Assertions.assertThat(progresses).isNotEmpty().allMatch(progress -> progress.getCompleted() < 1_000_000);
+        pool.shutdown();
+    }
+
+    @Test
+    public void pilot_without_expected_constructor_should_fail_before_any_game() {
+        // GIVEN
+        List<SimulationListener.Progress> progresses = new CopyOnWriteArrayList<>();
+        GoldfishSimulator simulator = GoldfishSimulator.builder()
+                .iterations(100)
+                .listener(progresses::add)
+                .pilotClass(NoConstructorPilot.class)
+                .build();
+
+        // WHEN / THEN
+        Assertions.assertThatIllegalArgumentException()
+                .isThrownBy(() -> simulator.simulate(SpikesPilot.DECK))
+                .withMessageContaining(NoConstructorPilot.class.getSimpleName());
+        Assertions.assertThatIllegalArgumentException()
+                .isThrownBy(() -> simulator.compare(Arrays.asList(SpikesPilot.DECK, SpikesPilot.DECK)))
+                .withMessageContaining(NoConstructorPilot.class.getSimpleName());
+        Assertions.assertThat(progresses).isEmpty();
+    }
+
+    @Test
+    public void provided_factories_should_be_used_instead_of_pilot_constructor() {
+        // GIVEN
+        AtomicInteger pilots = new AtomicInteger();
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        AtomicInteger games = new AtomicInteger();
+        GoldfishSimulator simulator = GoldfishSimulator.builder()
+                .iterations(200)
+                .chunkSize(50)
+                .gameFactory((onThePlay, logs) -> {
+                    threads.add(Thread.currentThread());
+                    games.incrementAndGet();
+                    return new Game(onThePlay, logs);
+                })
+                .pilotFactory(game -> {
+                    pilots.incrementAndGet();
+                    return new NoConstructorPilot(game, 0);
+                })
+                .pilotClass(NoConstructorPilot.class)
+                .build();
+
+        // WHEN
+        GoldfishSimulator.DeckStats stats = simulator.simulate(SpikesPilot.DECK);
+
+        // THEN
+        Assertions.assertThat(stats.getIterations()).isEqualTo(200);
+        // the pilot class constructor is never resolved; one game per worker thread (reset between games), one pilot per game (not reusable)
+        Assertions.assertThat(games.get()).isEqualTo(threads.size());
+        Assertions.assertThat(pilots.get()).isEqualTo(200);
+    }
+
+    @Test
+    public void pilot_class_factories_should_call_constructors_directly() {
+        // WHEN
+        GameFactory games = GameFactory.forPilot(SpikesPilot.class);
+        PilotFactory pilots = PilotFactory.of(SpikesPilot.class);
+        Game game = games.create(true, null);
+
+        // THEN
+        Assertions.assertThat(game).isExactlyInstanceOf(Game.class);
+        Assertions.assertThat(pilots.create(game)).isExactlyInstanceOf(SpikesPilot.class);
+        // bound by LambdaMetafactory: no captured method handle to invoke at creation
+        Assertions.assertThat(games.getClass().getDeclaredFields()).isEmpty();
+        Assertions.assertThat(pilots.getClass().getDeclaredFields()).isEmpty();
+    }
+
+    @Test
+    public void failing_game_should_report_replayed_logs() {
+        // GIVEN
+        GoldfishSimulator simulator = GoldfishSimulator.builder()
+                .iterations(10)
+                .seed(42L)
+                .pilotClass(FailingPilot.class)
+                .build();
+
+        // WHEN / THEN
+        Assertions.assertThatExceptionOfType(GameInternalError.class)
+                .isThrownBy(() -> simulator.simulate(SpikesPilot.DECK))
+                .withMessageContaining("=== Turn 3 ===")
+                .withMessageContaining("Can't move [black lotus]");
+    }
+
+    static List<String> dump(GoldfishSimulator.DeckStats stats) {
+        return stats.getResults().stream()
+                .map(result -> result.getStart() + "/" + result.getMulligans() + "/" + result.getOutcome() + "/" + result.getEndTurn() + ": " + result.getCount())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Mountains and lava spikes
+     */
+    static class SpikesPilot extends DeckPilot<Game> {
+        static final Deck DECK = Deck.builder()
+                .main(Cards.of(Stream.concat(Collections.nCopies(20, "mountain").stream(), Collections.nCopies(40, "lava spike").stream()).collect(Collectors.toList())))
+                .sideboard(Cards.empty())
+                .build();
+
+        SpikesPilot(Game game) {
+            super(game);
+        }
+
+        @Override
+        public boolean keepHand(Cards hand) {
+            return game.getMulligans() > 0 || hand.count("mountain") >= 2;
+        }
+
+        @Override
+        public void firstMainPhase() {
+            if (game.getHand().contains("mountain")) {
+                game.land("mountain");
+            }
+            game.getBattlefield().find(Permanent.untapped()).forEach(land -> game.tapLandForMana(land, Mana.R()));
+            while (game.getHand().contains("lava spike") && game.canPay(Mana.R())) {
+                game.castSorcery("lava spike", Mana.R());
+                game.damageOpponent(3);
+            }
+        }
+    }
+
+    /**
+     * Doesn't declare the expected constructor
+     */
+    static class NoConstructorPilot extends SpikesPilot {
+        NoConstructorPilot(Game game, int unused) {
+            super(game);
+        }
+    }
+
+    /**
+     * Fails on turn 3
+     */
+    static class FailingPilot extends SpikesPilot {
+        FailingPilot(Game game) {
+            super(game);
+        }
+
+        @Override
+        public void secondMainPhase() {
+            if (game.getCurrentTurn() == 3) {
+                game.discard("black lotus");
+            }
+        }
+    }
+}
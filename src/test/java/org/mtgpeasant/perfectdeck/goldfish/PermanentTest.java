@@ -3,6 +3,9 @@ package org.mtgpeasant.perfectdeck.goldfish;
 import org.junit.Test;
 
 import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mtgpeasant.perfectdeck.goldfish.Permanent.*;
@@ -113,4 +116,133 @@ public class PermanentTest {
         assertThat(clone.getCounters()).containsExactly(new AbstractMap.SimpleEntry<>("cnt2", 2));
     }
 
+    @Test
+    public void permanents_with_same_tags_and_counters_should_be_equal() {
+        // GIVEN
+        Permanent permanent = permanent(SKARRGAN_PIT_SKULK, Game.CardType.creature)
+                .tag("equality tag")
+                .incrCounter("equality counter");
+        permanent.removeTag("equality tag");
+        permanent.decrCounter("equality counter");
+
+        // WHEN
+        Permanent fresh = permanent(SKARRGAN_PIT_SKULK, Game.CardType.creature);
+
+        // THEN
+        assertThat(permanent.getTags()).isEmpty();
+        assertThat(permanent.getCounters()).isEmpty();
+        assertThat(permanent).isEqualTo(fresh);
+        assertThat(permanent.hashCode()).isEqualTo(fresh.hashCode());
+        assertThat(permanent).isNotEqualTo(fresh.clone().tag("equality tag"));
+        assertThat(permanent).isNotEqualTo(fresh.clone().setTapped(true));
+    }
+
+    @Test
+    public void tags_view_should_read_and_write_tags() {
+        // GIVEN
+        Permanent permanent = permanent(SKARRGAN_PIT_SKULK, Game.CardType.creature).tag("view tag 1");
+        Set<String> tags = permanent.getTags();
+
+        // WHEN
+        boolean added = tags.add("view tag 2");
+        boolean addedTwice = tags.add("view tag 2");
+        boolean removed = tags.remove("view tag 1");
+        boolean removedUnknown = tags.remove("never used tag");
+
+        // THEN
+        assertThat(added).isTrue();
+        assertThat(addedTwice).isFalse();
+        assertThat(removed).isTrue();
+        assertThat(removedUnknown).isFalse();
+        assertThat(tags).containsExactly("view tag 2").hasSize(1);
+        assertThat(permanent.hasTag("view tag 1")).isFalse();
+        assertThat(permanent.hasTag("view tag 2")).isTrue();
+
+        // WHEN
+        Iterator<String> iterator = tags.iterator();
+        iterator.next();
+        iterator.remove();
+
+        // THEN
+        assertThat(permanent.getTags()).isEmpty();
+    }
+
+    @Test
+    public void counters_view_should_read_and_write_counters() {
+        // GIVEN
+        Permanent permanent = permanent(SKARRGAN_PIT_SKULK, Game.CardType.creature).addCounter("view counter 1", 2);
+        Map<String, Integer> counters = permanent.getCounters();
+
+        // WHEN
+        Integer previous = counters.put("view counter 1", 5);
+        counters.put("view counter 2", 1);
+        Integer removed = counters.remove("view counter 2");
+
+        // THEN
+        assertThat(previous).isEqualTo(2);
+        assertThat(removed).isEqualTo(1);
+        assertThat(counters.get("never used counter")).isNull();
+        assertThat(counters).containsExactly(new AbstractMap.SimpleEntry<>("view counter 1", 5));
+        assertThat(permanent.getCounter("view counter 1")).isEqualTo(5);
+        assertThat(permanent.hasCounter("view counter 2")).isFalse();
+
+        // WHEN
+        Iterator<Map.Entry<String, Integer>> iterator = counters.entrySet().iterator();
+        iterator.next();
+        iterator.remove();
+
+        // THEN
+        assertThat(permanent.getCounters()).isEmpty();
+    }
+
+    @Test
+    public void keys_should_be_interned_and_flag_temporary_names() {
+        // GIVEN
+        Keys keys = new Keys();
+
+        // WHEN
+        int id = keys.register("key");
+        int temporaryId = keys.register("*key");
+
+        // THEN
+        assertThat(keys.register("key")).isEqualTo(id);
+        assertThat(keys.idOf("key")).isEqualTo(id);
+        assertThat(keys.idOf("unknown key")).isEqualTo(-1);
+        assertThat(keys.name(temporaryId)).isEqualTo("*key");
+        assertThat(keys.isTemporary(id)).isFalse();
+        assertThat(keys.isTemporary(temporaryId)).isTrue();
+    }
+
+    @Test
+    public void cleanup_should_remove_temporary_keys_beyond_first_word() {
+        // GIVEN
+        Keys keys = new Keys();
+        for (int i = 0; i < 100; i++) {
+            keys.register("key " + i);
+        }
+
+        // WHEN
+        int id = keys.register("*late key");
+
+        // THEN
+        assertThat(id).isEqualTo(100);
+        assertThat(keys.isTemporary(id)).isTrue();
+        assertThat(keys.temporaryWord(1)).isEqualTo(1L << id);
+        assertThat(keys.temporaryWord(0)).isZero();
+
+        // GIVEN
+        Permanent permanent = permanent(SKARRGAN_PIT_SKULK, Game.CardType.creature);
+        for (int i = 0; i < 100; i++) {
+            permanent.tag("cleanup tag " + i);
+        }
+        permanent.tag("*cleanup tag").addCounter("*cleanup counter", 1);
+
+        // WHEN
+        permanent.cleanup();
+
+        // THEN
+        assertThat(permanent.getTags()).hasSize(100).doesNotContain("*cleanup tag");
+        assertThat(permanent.getCounters()).isEmpty();
+    }
+
 }
@@ -0,0 +1,43 @@
+package org.mtgpeasant.perfectdeck.goldfish;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mtgpeasant.perfectdeck.goldfish.Permanent.*;
+
+public class PermanentsTest {
+    @Test
+    public void indexed_queries_should_follow_state_changes() {
+        // GIVEN
+        Permanents battlefield = new Permanents();
+        Permanent swamp1 = permanent("swamp", Game.CardType.land);
+        Permanent swamp2 = permanent("swamp", Game.CardType.land);
+        Permanent mountain = permanent("mountain", Game.CardType.land);
+        Permanent elves = permanent("llanowar elves", Game.CardType.creature);
+        battlefield.add(swamp1);
+        battlefield.add(mountain);
+        battlefield.add(0, swamp2);
+        battlefield.add(elves);
+        elves.setSickness(true);
+
+        // WHEN
+        swamp1.setTapped(true);
+
+        // THEN
+        assertThat(battlefield.count(withName("swamp").and(untapped()))).isEqualTo(1);
+        assertThat(battlefield.find(withName("mountain", "swamp"))).containsExactly(swamp2, swamp1, mountain);
+        assertThat(battlefield.findFirst(withName("mountain", "swamp").and(tapped()))).contains(swamp1);
+        assertThat(battlefield.find(creaturesThatCanBeTapped())).isEmpty();
+
+        // WHEN
+        battlefield.forEach(Permanent::cleanup);
+        battlefield.remove(swamp1);
+        swamp1.setTapped(false);
+
+        // THEN
+        assertThat(battlefield.find(creaturesThatCanBeTapped())).containsExactly(elves);
+        assertThat(battlefield.count(tapped())).isEqualTo(0);
+        assertThat(battlefield.count(withName("swamp"))).isEqualTo(1);
+        assertThat(battlefield.clone().find(withType(Game.CardType.land))).containsExactly(swamp2, mountain);
+    }
+}